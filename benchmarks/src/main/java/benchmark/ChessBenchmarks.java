@@ -0,0 +1,128 @@
+package benchmark;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import chess.MoveList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the public engine API the server calls on every move. Each method
+ * covers every piece of the side to move so results compare across positions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChessBenchmarks {
+
+    @Param({"opening", "middlegame", "endgame"})
+    public String position;
+
+    private ChessGame game;
+    private ChessBoard board;
+    private ChessBoard scratchBoard;
+    private ChessPosition[] pieces;
+    private ChessPosition kingPosition;
+    private ChessPiece king;
+    private ChessMove move;
+    private final MoveList moveList = new MoveList();
+
+    @Setup
+    public void setUp() {
+        game = Positions.load(position);
+        board = game.getBoard();
+        scratchBoard = new ChessBoard();
+        pieces = Positions.piecesOf(board, game.getTeamTurn());
+        for (ChessPosition piece : pieces) {
+            if (board.getPiece(piece).getPieceType() == ChessPiece.PieceType.KING) {
+                kingPosition = piece;
+                king = board.getPiece(piece);
+            }
+            if (move == null && !game.validMoves(piece).isEmpty()) {
+                move = game.validMoves(piece).iterator().next();
+            }
+        }
+    }
+
+    @Benchmark
+    public void pieceMoves(Blackhole blackhole) {
+        for (ChessPosition piece : pieces) {
+            blackhole.consume(board.getPiece(piece).pieceMoves(board, piece));
+        }
+    }
+
+    @Benchmark
+    public void validMoves(Blackhole blackhole) {
+        for (ChessPosition piece : pieces) {
+            blackhole.consume(game.validMoves(piece));
+        }
+    }
+
+    /**
+     * The same moves as {@link #validMoves} for the side to move, through the
+     * allocation-free primitive API.
+     */
+    @Benchmark
+    public int legalMoves() {
+        game.legalMoves(moveList);
+        return moveList.size();
+    }
+
+    @Benchmark
+    public boolean isInCheck() {
+        return game.isInCheck(game.getTeamTurn());
+    }
+
+    /**
+     * Re-adding the king marks the board as changed, so every call skips the
+     * game's own status cache and looks the position up in the shared
+     * {@link chess.MoveCache}, as a game seeing a known position would.
+     */
+    @Benchmark
+    public boolean isInCheckmate() {
+        board.addPiece(kingPosition, king);
+        return game.isInCheckmate(game.getTeamTurn());
+    }
+
+    @Benchmark
+    public ChessGame makeMove() throws InvalidMoveException {
+        game.makeMove(move);
+        game.undoMove();
+        return game;
+    }
+
+    @Benchmark
+    public ChessBoard resetBoard() {
+        scratchBoard.resetBoard();
+        return scratchBoard;
+    }
+
+    @Benchmark
+    public int boardHashCode() {
+        return board.hashCode();
+    }
+
+    @Benchmark
+    public int gameHashCode() {
+        return game.hashCode();
+    }
+}
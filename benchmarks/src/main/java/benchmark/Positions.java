@@ -0,0 +1,53 @@
+package benchmark;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.Fen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The positions every benchmark runs against, one per phase of the game.
+ */
+final class Positions {
+
+    static final Map<String, String> CORPUS = Map.of(
+            // Ruy Lopez after 3...a6
+            "opening", "r1bqkbnr/1ppp1ppp/p1n5/1B2p3/4P3/5N2/PPPP1PPP/RNBQK2R w",
+            // "Kiwipete": pins, checks and captures everywhere
+            "middlegame", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w",
+            // rook and pawns with both kings exposed
+            "endgame", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w"
+    );
+
+    private Positions() {
+    }
+
+    /**
+     * @return a game set up from a corpus FEN
+     */
+    static ChessGame load(String name) {
+        return Fen.decode(CORPUS.get(name));
+    }
+
+    /**
+     * @return every square holding a piece of the given team
+     */
+    static ChessPosition[] piecesOf(ChessBoard board, ChessGame.TeamColor team) {
+        List<ChessPosition> positions = new ArrayList<>();
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                ChessPosition position = ChessPosition.of(row, col);
+                ChessPiece piece = board.getPiece(position);
+                if (piece != null && piece.getTeamColor() == team) {
+                    positions.add(position);
+                }
+            }
+        }
+        return positions.toArray(new ChessPosition[0]);
+    }
+}
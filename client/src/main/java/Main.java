@@ -14,6 +14,7 @@ import com.google.gson.JsonElement;
 import java.util.*;
 
 import websocket.commands.MakeMoveCommand;
+import websocket.messages.AnalysisMessage;
 import websocket.messages.ErrorMessage;
 import websocket.messages.LoadGameMessage;
 import websocket.messages.NotificationMessage;
@@ -96,6 +97,7 @@ public class Main {
                 case "help" -> displayGameplayHelp();
                 case "move" -> makeMove(gameID);
                 case "resign" -> resignGame(gameID);
+                case "analyze" -> analyzeGame(gameID);
                 case "board" -> displayChessBoard(playerColor);
                 case "highlight" -> highlightLegalMoves();
                 case "redraw" -> redrawChessBoard();
@@ -125,6 +127,17 @@ public class Main {
                     String notification = jsonMessage.get("message").getAsString();
                     System.out.println("Notification: " + notification);
                 }
+                case "ANALYSIS" -> {
+                    AnalysisMessage analysis = GSON.fromJson(message, AnalysisMessage.class);
+                    String score = analysis.getMateIn() != 0 ? "mate in " + analysis.getMateIn()
+                            : String.format("%+.2f", analysis.getScore() / 100.0);
+                    StringJoiner line = new StringJoiner(" ");
+                    for (ChessMove move : analysis.getPrincipalVariation()) {
+                        line.add(move.toString());
+                    }
+                    System.out.println("Analysis depth " + analysis.getDepth() + ": " + score
+                            + (analysis.isFinished() ? " (final) " : " ") + line);
+                }
                 case "ERROR" -> {
                     String error = jsonMessage.get("message").getAsString();
                     System.err.println("Error: " + error);
@@ -196,6 +209,15 @@ public class Main {
         }
     }
 
+    private static void analyzeGame(int gameID) {
+        try {
+            websocket.analyzeGame(authToken, gameID);
+            System.out.println("Analyzing the position...");
+        } catch (HttpRetryException e) {
+            System.out.println("Failed to analyze: " + e.getMessage());
+        }
+    }
+
     private static void leaveGame(int gameID) {
         try {
             websocket.leaveGame(authToken, gameID);
@@ -208,6 +230,7 @@ public class Main {
     private static void displayGameplayHelp() {
         System.out.println("  move - make a move on the board");
         System.out.println("  resign - resign from the game");
+        System.out.println("  analyze - watch the engine analyze the position (observers, or after the game)");
         System.out.println("  board - view the current chessboard");
         System.out.println("  quit - leave the game");
     }
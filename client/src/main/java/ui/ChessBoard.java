@@ -37,7 +37,7 @@ public class ChessBoard {
   public void updateBoard(chess.ChessBoard chessBoard) {
     for (int row = 1; row <= 8; row++) {
       for (int col = 1; col <= 8; col++) {
-        ChessPiece piece = chessBoard.getPiece(new ChessPosition(row, col));
+        ChessPiece piece = chessBoard.getPiece(ChessPosition.of(row, col));
         if (piece == null) {
           board[8 - row][col - 1] = EscapeSequences.EMPTY;
         } else {
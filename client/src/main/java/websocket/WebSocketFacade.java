@@ -86,4 +86,13 @@ public class WebSocketFacade extends Endpoint {
     }
   }
 
+  public void analyzeGame(String authToken, int gameID) throws HttpRetryException {
+    try {
+      var action = new UserGameCommand(UserGameCommand.CommandType.ANALYZE, authToken, gameID);
+      this.session.getBasicRemote().sendText(new Gson().toJson(action));
+    } catch (IOException ex) {
+      throw new HttpRetryException(ex.getMessage(),500);
+    }
+  }
+
 }
@@ -1,11 +1,14 @@
 package dataaccess;
 
+import chess.ChessGame;
+import chess.ChessMove;
 import exception.ResponseException;
 import model.UserData;
 import model.GameData;
 import model.AuthData;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface DataAccess {
 
@@ -23,6 +26,18 @@ public interface DataAccess {
 
   void updateGame(int gameID, GameData game) throws DataAccessException;
 
+  /**
+   * Records one move of a game without rewriting the rest of it.
+   *
+   * @param game the game after the move was made
+   */
+  void appendMove(int gameID, ChessMove move, ChessGame game) throws DataAccessException;
+
+  /**
+   * @return every move appended to a game, oldest first
+   */
+  List<ChessMove> getMoves(int gameID) throws DataAccessException;
+
   AuthData createAuth(AuthData auth) throws DataAccessException;
 
   AuthData getAuth(String authToken) throws DataAccessException;
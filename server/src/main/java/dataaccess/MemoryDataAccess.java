@@ -3,6 +3,7 @@ package dataaccess;
 import java.util.*;
 
 import chess.ChessGame;
+import chess.ChessMove;
 import model.UserData;
 import model.GameData;
 import model.AuthData;
@@ -16,12 +17,14 @@ public class MemoryDataAccess implements DataAccess {
   private Collection<UserData> users = new ArrayList<>();
   private HashMap<Integer, GameData> games = new HashMap<>();
   private Collection<AuthData> auths = new ArrayList<>();
+  private HashMap<Integer, List<ChessMove>> moves = new HashMap<>();
 
   @Override
   public void clear() {
     users.clear();
     games.clear();
     auths.clear();
+    moves.clear();
   }
 
   public Collection<UserData> getUsers() {
@@ -69,6 +72,21 @@ public class MemoryDataAccess implements DataAccess {
     games.replace(gameID, game);
   }
 
+  @Override
+  public void appendMove(int gameID, ChessMove move, ChessGame game) throws DataAccessException {
+    GameData gameData = games.get(gameID);
+    if (gameData == null) {
+      throw new DataAccessException("No game found with gameID: " + gameID);
+    }
+    games.put(gameID, new GameData(gameID, gameData.whiteUsername(), gameData.blackUsername(), gameData.gameName(), game));
+    moves.computeIfAbsent(gameID, id -> new ArrayList<>()).add(move);
+  }
+
+  @Override
+  public List<ChessMove> getMoves(int gameID) throws DataAccessException {
+    return List.copyOf(moves.getOrDefault(gameID, List.of()));
+  }
+
   @Override
   public AuthData createAuth(AuthData auth) throws DataAccessException {
     auths.add(auth);
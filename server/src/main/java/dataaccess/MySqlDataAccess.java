@@ -1,7 +1,13 @@
 package dataaccess;
 
 import chess.ChessGame;
+import chess.ChessMove;
+import chess.GameCodec;
+import chess.InvalidMoveException;
+import chess.PackedMove;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
 import model.AuthData;
 import model.GameData;
 import model.UserData;
@@ -9,6 +15,9 @@ import org.mindrot.jbcrypt.BCrypt;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.sql.*;
 
 import static java.sql.Statement.RETURN_GENERATED_KEYS;
@@ -16,6 +25,13 @@ import static java.sql.Types.NULL;
 
 public class MySqlDataAccess implements DataAccess {
 
+  /**
+   * How many moves must be appended to a game before its stored state is
+   * rewritten at the next capture or pawn move. A read replays at most this many
+   * moves plus the hundred plies the fifty-move rule allows between those.
+   */
+  private static final int SNAPSHOT_INTERVAL = 20;
+
   public MySqlDataAccess() throws DataAccessException {
     configureDatabase();
   }
@@ -27,6 +43,8 @@ public class MySqlDataAccess implements DataAccess {
     executeUpdate(statement2);
     var statement3 = "TRUNCATE auth";
     executeUpdate(statement3);
+    var statement4 = "TRUNCATE game_move";
+    executeUpdate(statement4);
   }
 
   @Override
@@ -60,21 +78,24 @@ public class MySqlDataAccess implements DataAccess {
 
   @Override
   public GameData createGame(GameData game) throws DataAccessException {
-    var statement = "INSERT INTO game (gameID, whiteUsername, blackUsername, gameName, gameJson) VALUES (?,?,?,?,?)";
-    var gameJson = new Gson().toJson(game);
-    int generatedGameID = executeUpdate(statement, game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName(), gameJson);
-    return new GameData(generatedGameID, game.whiteUsername(), game.blackUsername(), game.gameName(), game.game());
+    var statement = "INSERT INTO game (gameID, whiteUsername, blackUsername, gameName, gameState) VALUES (?,?,?,?,?)";
+    var chessGame = game.game() != null ? game.game() : new ChessGame();
+    int generatedGameID = executeUpdate(statement, game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName(),
+            GameCodec.encode(chessGame));
+    return new GameData(generatedGameID, game.whiteUsername(), game.blackUsername(), game.gameName(), chessGame);
   }
 
   @Override
   public GameData getGame(int gameID) throws DataAccessException {
     try (var conn = DatabaseManager.getConnection()) {
-      var statement = "SELECT gameID, whiteUsername, blackUsername, gameName, gameJson FROM game WHERE gameID=?";
+      var statement = "SELECT gameID, whiteUsername, blackUsername, gameName, gameState FROM game WHERE gameID=?";
       try (var ps = conn.prepareStatement(statement)) {
         ps.setInt(1, gameID);
         try (var rs = ps.executeQuery()) {
           if (rs.next()) {
-            return readGame(rs);
+            GameData game = readGame(rs);
+            replayMoves(conn, Map.of(gameID, game.game()), gameID);
+            return game;
           }
         }
       }
@@ -88,23 +109,40 @@ public class MySqlDataAccess implements DataAccess {
   public Collection<GameData> listGames() throws DataAccessException {
     var result = new ArrayList<GameData>();
     try (var conn = DatabaseManager.getConnection()) {
-      var statement = "SELECT gameID, whiteUsername, blackUsername, gameName, gameJson FROM game";
+      var statement = "SELECT gameID, whiteUsername, blackUsername, gameName, gameState FROM game";
+      var games = new HashMap<Integer, ChessGame>();
       try (var ps = conn.prepareStatement(statement)) {
         try (var rs = ps.executeQuery()) {
           while (rs.next()) {
-            result.add(readGame(rs));
+            GameData game = readGame(rs);
+            result.add(game);
+            games.put(game.gameID(), game.game());
           }
         }
       }
+      replayMoves(conn, games, null);
     } catch (Exception e) {
       throw new DataAccessException("Unable to read game data: %s"+ e.getMessage());
     }
     return result;
   }
 
+  /**
+   * Saves a game's players and name. The game's state is only rewritten, and the
+   * snapshot moved to the latest logged move, when the game is over or its last
+   * move was a capture or pawn move, the same points {@link #appendMove} snapshots
+   * at. Anywhere else a snapshot would cut positions that can still repeat out of
+   * the history replayed on the next load.
+   */
   @Override
   public void updateGame(int gameID, GameData game) throws DataAccessException {
-    String sql = "UPDATE game SET whiteUsername = ?, blackUsername = ?, gameName = ?, gameJson = ? WHERE gameID = ?";
+    ChessGame chessGame = game.game();
+    boolean snapshot = chessGame != null && (chessGame.isGameOver() || chessGame.getHalfmoveClock() == 0);
+    String sql = snapshot ? """
+            UPDATE game SET whiteUsername = ?, blackUsername = ?, gameName = ?, gameState = ?,
+              snapshotPly = (SELECT COALESCE(MAX(ply), 0) FROM game_move WHERE gameID = ?)
+            WHERE gameID = ?
+            """ : "UPDATE game SET whiteUsername = ?, blackUsername = ?, gameName = ? WHERE gameID = ?";
 
     try (Connection conn = DatabaseManager.getConnection();
          PreparedStatement ps = conn.prepareStatement(sql)) {
@@ -112,8 +150,13 @@ public class MySqlDataAccess implements DataAccess {
       ps.setString(1, game.whiteUsername());
       ps.setString(2, game.blackUsername());
       ps.setString(3, game.gameName());
-      ps.setString(4, new Gson().toJson(game.game()));
-      ps.setInt(5, gameID);
+      if (snapshot) {
+        ps.setBytes(4, GameCodec.encode(chessGame));
+        ps.setInt(5, gameID);
+        ps.setInt(6, gameID);
+      } else {
+        ps.setInt(4, gameID);
+      }
 
       int rowsAffected = ps.executeUpdate();
       if (rowsAffected == 0) {
@@ -125,6 +168,79 @@ public class MySqlDataAccess implements DataAccess {
 
   }
 
+  /**
+   * Inserts one row into the move log. The game's stored state is only rewritten
+   * when the move ends the game, or when at least {@link #SNAPSHOT_INTERVAL} moves
+   * have passed and the move was a capture or pawn move. Snapshots taken there
+   * lose no position that could still repeat, so replaying the moves after one
+   * rebuilds the game's repetition history.
+   */
+  @Override
+  public void appendMove(int gameID, ChessMove move, ChessGame game) throws DataAccessException {
+    try (Connection conn = DatabaseManager.getConnection()) {
+      conn.setAutoCommit(false);
+      try {
+        // Locking the game row serializes appends to the same game
+        int snapshotPly;
+        try (var ps = conn.prepareStatement("SELECT snapshotPly FROM game WHERE gameID = ? FOR UPDATE")) {
+          ps.setInt(1, gameID);
+          try (var rs = ps.executeQuery()) {
+            if (!rs.next()) {
+              throw new DataAccessException("No game found with gameID: " + gameID);
+            }
+            snapshotPly = rs.getInt(1);
+          }
+        }
+        int ply;
+        try (var ps = conn.prepareStatement("SELECT COALESCE(MAX(ply), 0) FROM game_move WHERE gameID = ?")) {
+          ps.setInt(1, gameID);
+          try (var rs = ps.executeQuery()) {
+            rs.next();
+            ply = rs.getInt(1) + 1;
+          }
+        }
+        try (var ps = conn.prepareStatement("INSERT INTO game_move (gameID, ply, move) VALUES (?, ?, ?)")) {
+          ps.setInt(1, gameID);
+          ps.setInt(2, ply);
+          ps.setShort(3, (short) PackedMove.fromChessMove(move));
+          ps.executeUpdate();
+        }
+        if ((ply - snapshotPly >= SNAPSHOT_INTERVAL && game.getHalfmoveClock() == 0) || game.isGameOver()) {
+          try (var ps = conn.prepareStatement("UPDATE game SET gameState = ?, snapshotPly = ? WHERE gameID = ?")) {
+            ps.setBytes(1, GameCodec.encode(game));
+            ps.setInt(2, ply);
+            ps.setInt(3, gameID);
+            ps.executeUpdate();
+          }
+        }
+        conn.commit();
+      } catch (SQLException | DataAccessException e) {
+        conn.rollback();
+        throw e;
+      }
+    } catch (SQLException e) {
+      throw new DataAccessException("Unable to record move: " + e.getMessage());
+    }
+  }
+
+  @Override
+  public List<ChessMove> getMoves(int gameID) throws DataAccessException {
+    var moves = new ArrayList<ChessMove>();
+    var statement = "SELECT move FROM game_move WHERE gameID = ? ORDER BY ply";
+    try (var conn = DatabaseManager.getConnection();
+         var ps = conn.prepareStatement(statement)) {
+      ps.setInt(1, gameID);
+      try (var rs = ps.executeQuery()) {
+        while (rs.next()) {
+          moves.add(PackedMove.toChessMove(rs.getShort("move")));
+        }
+      }
+    } catch (SQLException e) {
+      throw new DataAccessException("Unable to read moves: " + e.getMessage());
+    }
+    return moves;
+  }
+
   @Override
   public AuthData createAuth(AuthData auth) throws DataAccessException {
     var statement = "INSERT INTO auth (authToken, username) VALUES (?, ?)";
@@ -162,10 +278,38 @@ public class MySqlDataAccess implements DataAccess {
     var whiteUsername = rs.getString("whiteUsername");
     var blackUsername = rs.getString("blackUsername");
     var gameName = rs.getString("gameName");
-    var gameJson = rs.getString("gameJson");
-    var game = new Gson().fromJson(gameJson, ChessGame.class);
+    var game = GameCodec.decode(rs.getBytes("gameState"));
     return new GameData(gameID, whiteUsername, blackUsername, gameName, game);
   }
+
+  /**
+   * Brings stored games up to date by playing the moves logged after their
+   * snapshots. The moves were checked when they were appended, so they are
+   * replayed without generating legal moves again.
+   *
+   * @param games  the games to update, by ID
+   * @param gameID the only game to read moves for, or null for all of them
+   */
+  private void replayMoves(Connection conn, Map<Integer, ChessGame> games, Integer gameID)
+          throws SQLException, InvalidMoveException {
+    var statement = "SELECT m.gameID, m.move FROM game_move m JOIN game g ON g.gameID = m.gameID "
+            + "WHERE m.ply > g.snapshotPly" + (gameID == null ? "" : " AND m.gameID = ?")
+            + " ORDER BY m.gameID, m.ply";
+    try (var ps = conn.prepareStatement(statement)) {
+      if (gameID != null) {
+        ps.setInt(1, gameID);
+      }
+      try (var rs = ps.executeQuery()) {
+        while (rs.next()) {
+          ChessGame game = games.get(rs.getInt("gameID"));
+          if (game != null) {
+            game.replayMove(rs.getShort("move") & 0xFFFF);
+          }
+        }
+      }
+    }
+  }
+
   private int executeUpdate(String statement, Object... params) throws DataAccessException {
     try (var conn = DatabaseManager.getConnection()) {
       try (var ps = conn.prepareStatement(statement, RETURN_GENERATED_KEYS)) {
@@ -173,6 +317,7 @@ public class MySqlDataAccess implements DataAccess {
           var param = params[i];
           if (param instanceof String p) {ps.setString(i + 1, p);}
           else if (param instanceof Integer p) {ps.setInt(i + 1, p);}
+          else if (param instanceof byte[] p) {ps.setBytes(i + 1, p);}
           else if (param == null) {ps.setNull(i + 1, NULL);}
         }
         ps.executeUpdate();
@@ -195,7 +340,17 @@ public class MySqlDataAccess implements DataAccess {
               `whiteUsername` varchar (256),
               `blackUsername` varchar (256),
               `gameName` varchar (256) NOT NULL,
-              `gameJson` longtext NOT NULL
+              `gameState` varbinary(64) NOT NULL,
+              `snapshotPly` int NOT NULL DEFAULT 0
+            )
+            """,
+            """
+            CREATE TABLE IF NOT EXISTS game_move (
+              `gameID` int NOT NULL,
+              `ply` int NOT NULL,
+              `move` smallint NOT NULL,
+              `createdAt` timestamp(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+              PRIMARY KEY (`gameID`, `ply`)
             )
             """,
             """
@@ -223,8 +378,79 @@ public class MySqlDataAccess implements DataAccess {
           preparedStatement.executeUpdate();
         }
       }
+      migrateGameJson(conn);
+      if (!hasGameColumn(conn, "snapshotPly")) {
+        try (var ps = conn.prepareStatement("ALTER TABLE game ADD COLUMN `snapshotPly` int NOT NULL DEFAULT 0")) {
+          ps.executeUpdate();
+        }
+      }
     } catch (SQLException ex) {
       throw new DataAccessException("Unable to configure database: %s");
     }
   }
+
+  /**
+   * Converts games stored as JSON in the old {@code gameJson} column to the binary
+   * {@code gameState} column, then drops {@code gameJson}. Safe to rerun if a
+   * previous attempt stopped partway.
+   */
+  private void migrateGameJson(Connection conn) throws SQLException {
+    if (!hasGameColumn(conn, "gameJson")) {
+      return;
+    }
+    if (!hasGameColumn(conn, "gameState")) {
+      try (var ps = conn.prepareStatement("ALTER TABLE game ADD COLUMN `gameState` varbinary(64)")) {
+        ps.executeUpdate();
+      }
+    }
+    conn.setAutoCommit(false);
+    try (var select = conn.prepareStatement("SELECT gameID, gameJson FROM game WHERE gameState IS NULL");
+         var update = conn.prepareStatement("UPDATE game SET gameState = ? WHERE gameID = ?");
+         var rs = select.executeQuery()) {
+      while (rs.next()) {
+        update.setBytes(1, GameCodec.encode(readLegacyGame(rs.getString("gameJson"))));
+        update.setInt(2, rs.getInt("gameID"));
+        update.addBatch();
+      }
+      update.executeBatch();
+      conn.commit();
+    } catch (SQLException e) {
+      conn.rollback();
+      throw e;
+    } finally {
+      conn.setAutoCommit(true);
+    }
+    try (var ps = conn.prepareStatement(
+            "ALTER TABLE game DROP COLUMN `gameJson`, MODIFY `gameState` varbinary(64) NOT NULL")) {
+      ps.executeUpdate();
+    }
+  }
+
+  private boolean hasGameColumn(Connection conn, String column) throws SQLException {
+    var statement = """
+            SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS
+            WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'game' AND COLUMN_NAME = ?
+            """;
+    try (var ps = conn.prepareStatement(statement)) {
+      ps.setString(1, column);
+      try (var rs = ps.executeQuery()) {
+        return rs.next() && rs.getInt(1) > 0;
+      }
+    }
+  }
+
+  /**
+   * Old rows hold either a serialized ChessGame or, for games that were never
+   * updated, the whole GameData with a null game, which means a new game.
+   */
+  private static ChessGame readLegacyGame(String gameJson) {
+    JsonElement json = JsonParser.parseString(gameJson);
+    if (json.isJsonObject() && json.getAsJsonObject().has("board")) {
+      return new Gson().fromJson(json, ChessGame.class);
+    }
+    if (json.isJsonObject() && json.getAsJsonObject().has("game")) {
+      return new Gson().fromJson(json.getAsJsonObject().get("game"), ChessGame.class);
+    }
+    return new ChessGame();
+  }
 }
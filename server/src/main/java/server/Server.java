@@ -1,5 +1,6 @@
 package server;
 
+import chess.Tablebases;
 import com.google.gson.Gson;
 import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
@@ -7,21 +8,33 @@ import dataaccess.MemoryDataAccess;
 import dataaccess.MySqlDataAccess;
 import model.*;
 import server.websocket.WebsocketHandler;
+import service.AnalysisService;
 import service.ClearService;
+import service.EngineService;
 import service.GameService;
+import service.OpeningBookService;
 import service.UserService;
 import service.serviceexceptions.AlreadyTakenException;
 import service.serviceexceptions.BadRequestException;
+import service.serviceexceptions.TooManyRequestsException;
 import service.serviceexceptions.UnauthorizedException;
 import spark.*;
 
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 public class Server {
     private final UserService userService;
     private final GameService gameService;
     private final ClearService clearService;
+    private final OpeningBookService openingBookService;
+    private final Set<String> operators = readOperators();
     private DataAccess dataaccess;
+    private EngineService engineService;
 
 
     public Server() {
@@ -34,7 +47,30 @@ public class Server {
         userService = new UserService(dataaccess);
         gameService = new GameService(dataaccess);
         clearService = new ClearService(dataaccess);
+        openingBookService = new OpeningBookService(dataaccess,
+                Path.of(System.getProperty("chess.book", "opening-book.bin")), Integer.getInteger("chess.book.plies", 16),
+                operators, Long.getLong("chess.book.rebuildIntervalMillis", 60_000));
+        try {
+            Tablebases.shared();
+        } catch (UncheckedIOException e) {
+            System.err.println("Could not load tablebases: " + e.getMessage());
+            Tablebases.setShared(Tablebases.EMPTY);
+        }
     }
+    /**
+     * @return the usernames listed in the chess.book.operators property, which may
+     * change the opening book and read the engine metrics; nobody may by default
+     */
+    private static Set<String> readOperators() {
+        Set<String> operators = new HashSet<>();
+        for (String username : System.getProperty("chess.book.operators", "").split(",")) {
+            if (!username.isBlank()) {
+                operators.add(username.strip());
+            }
+        }
+        return operators;
+    }
+
     public int getPort() {
         return Spark.port();
     }
@@ -43,7 +79,11 @@ public class Server {
         Spark.port(desiredPort);
 
         Spark.staticFiles.location("web");
-        WebsocketHandler webSocketHandler = new WebsocketHandler(dataaccess);
+        engineService = new EngineService();
+        AnalysisService analysisService = new AnalysisService(engineService,
+                Integer.getInteger("chess.analysis.cache", 1024), AnalysisService.DEFAULT_LIMITS);
+        WebsocketHandler webSocketHandler = new WebsocketHandler(dataaccess, engineService, analysisService,
+                openingBookService);
 
         Spark.webSocket("/ws", webSocketHandler);
         Spark.delete("/db", this::clearApplication);
@@ -53,6 +93,9 @@ public class Server {
         Spark.get("/game", this::listGames);
         Spark.post("/game", this::createGame);
         Spark.put("/game", this::joinGame);
+        Spark.get("/engine/metrics", this::engineMetrics);
+        Spark.post("/book", this::rebuildBook);
+        Spark.put("/book", this::reloadBook);
 
         Spark.awaitInitialization();
         return Spark.port();
@@ -61,6 +104,9 @@ public class Server {
     public void stop() {
         Spark.stop();
         Spark.awaitStop();
+        if (engineService != null) {
+            engineService.close();
+        }
     }
 
     public Object clearApplication(Request req, Response res) throws DataAccessException {
@@ -157,7 +203,7 @@ public class Server {
         try {
             String authToken = req.headers("authorization");
             JoinGameData joinGame = new Gson().fromJson(req.body(), JoinGameData.class);
-            gameService.joinGame(authToken, joinGame.playerColor(), joinGame.gameID());
+            gameService.joinGame(authToken, joinGame.playerColor(), joinGame.gameID(), joinGame.computerOpponent());
             res.status(200);
             return "{}";
         } catch (UnauthorizedException e) {
@@ -174,6 +220,49 @@ public class Server {
             return new Gson().toJson(new ErrorMessage("Error: " + e.getMessage()));
         }
     }
+    public Object engineMetrics(Request req, Response res) {
+        try {
+            AuthData auth = dataaccess.getAuth(req.headers("authorization"));
+            if (auth == null || !operators.contains(auth.username())) {
+                res.status(401);
+                return new Gson().toJson(new ErrorMessage("Error: unauthorized"));
+            }
+            res.status(200);
+            return new Gson().toJson(engineService.metrics());
+        } catch (Exception e) {
+            res.status(500);
+            return new Gson().toJson(new ErrorMessage("Error: " + e.getMessage()));
+        }
+    }
+    public Object rebuildBook(Request req, Response res) {
+        try {
+            int entries = openingBookService.rebuild(req.headers("authorization"));
+            res.status(200);
+            return new Gson().toJson(Map.of("entries", entries));
+        } catch (UnauthorizedException e) {
+            res.status(401);
+            return new Gson().toJson(new ErrorMessage("Error: unauthorized"));
+        } catch (TooManyRequestsException e) {
+            res.status(429);
+            return new Gson().toJson(new ErrorMessage("Error: " + e.getMessage()));
+        } catch (Exception e) {
+            res.status(500);
+            return new Gson().toJson(new ErrorMessage("Error: " + e.getMessage()));
+        }
+    }
+    public Object reloadBook(Request req, Response res) {
+        try {
+            int entries = openingBookService.reload(req.headers("authorization"));
+            res.status(200);
+            return new Gson().toJson(Map.of("entries", entries));
+        } catch (UnauthorizedException e) {
+            res.status(401);
+            return new Gson().toJson(new ErrorMessage("Error: unauthorized"));
+        } catch (Exception e) {
+            res.status(500);
+            return new Gson().toJson(new ErrorMessage("Error: " + e.getMessage()));
+        }
+    }
     record ErrorMessage (String message){}
 
 }
@@ -3,6 +3,9 @@ package server.websocket;
 import chess.ChessGame;
 import chess.ChessMove;
 import chess.InvalidMoveException;
+import chess.SearchLimits;
+import chess.SearchResult;
+import chess.TablebaseResult;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import dataaccess.DataAccess;
@@ -11,22 +14,44 @@ import model.AuthData;
 import model.GameData;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.annotations.*;
+import service.AnalysisService;
+import service.EngineService;
+import service.OpeningBookService;
 import websocket.commands.MakeMoveCommand;
 import websocket.commands.UserGameCommand;
+import websocket.messages.AnalysisMessage;
 import websocket.messages.ErrorMessage;
 import websocket.messages.LoadGameMessage;
 import websocket.messages.ServerMessage;
 
 import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
 
 @WebSocket
 public class WebsocketHandler {
   private final ConnectionManager connectionManager = new ConnectionManager();
   private final DataAccess dataAccess;
   private final Gson gson = new Gson();
-
-  public WebsocketHandler(DataAccess dataAccess) {
+  private final EngineService engineService;
+  private final AnalysisService analysisService;
+  private final OpeningBookService openingBook;
+  // Commands for a game and the computer's moves in it take the game's lock, so
+  // they never read and change the same game at once. Games share a fixed set of
+  // locks, so nothing piles up as games come and go.
+  private final Object[] gameLocks = new Object[64];
+  private static final SearchLimits COMPUTER_LIMITS = SearchLimits.time(1000);
+  // A computer move still waiting after this long is dropped; reconnecting asks again
+  private static final long COMPUTER_DEADLINE_MILLIS = 10_000;
+
+  public WebsocketHandler(DataAccess dataAccess, EngineService engineService, AnalysisService analysisService,
+                          OpeningBookService openingBook) {
     this.dataAccess = dataAccess;
+    this.engineService = engineService;
+    this.analysisService = analysisService;
+    this.openingBook = openingBook;
+    for (int i = 0; i < gameLocks.length; i++) {
+      gameLocks[i] = new Object();
+    }
   }
 
   @OnWebSocketConnect
@@ -48,11 +73,14 @@ public class WebsocketHandler {
 
       String username = authData.username();
 
-      switch (command.getCommandType()) {
-        case CONNECT -> handleConnect(session, username, command);
-        case MAKE_MOVE -> handleMakeMove(session, username, message);
-        case LEAVE -> handleLeave(session, username, command);
-        case RESIGN -> handleResign(session, username, command);
+      synchronized (gameLock(command.getGameID())) {
+        switch (command.getCommandType()) {
+          case CONNECT -> handleConnect(session, username, command);
+          case MAKE_MOVE -> handleMakeMove(session, username, message);
+          case LEAVE -> handleLeave(session, username, command);
+          case RESIGN -> handleResign(session, username, command);
+          case ANALYZE -> handleAnalyze(session, username, command);
+        }
       }
     } catch (Exception e) {
       try {
@@ -63,10 +91,16 @@ public class WebsocketHandler {
     }
   }
 
+  private Object gameLock(int gameID) {
+    return gameLocks[Math.floorMod(gameID, gameLocks.length)];
+  }
+
   @OnWebSocketClose
   public void onClose(Session session, int statusCode, String reason) {
     System.out.println("A client disconnected: " + reason);
     connectionManager.connections.values().removeIf(conn -> conn.session.equals(session));
+    engineService.cancelOwner(session);
+    analysisService.unsubscribe(session);
   }
 
   @OnWebSocketError
@@ -93,6 +127,9 @@ public class WebsocketHandler {
             gameData.game()
     );
     session.getRemote().sendString(gson.toJson(loadGameMessage));
+
+    // The computer may be seated as white and waiting for someone to play against
+    playComputerMove(gameData, session);
   }
 
 
@@ -145,21 +182,8 @@ public class WebsocketHandler {
 
       // Attempt to make the move
       game.makeMove(move);
-      dataAccess.updateGame(command.getGameID(), gameData);
-
-      // Notify other players with an updated game state
-      LoadGameMessage loadGameMessage = new LoadGameMessage(
-              gameData.gameID(),
-              gameData.whiteUsername(),
-              gameData.blackUsername(),
-              gameData.gameName(),
-              game
-      );
-
-      connectionManager.broadcast(command.getGameID(), username, gson.toJson(loadGameMessage));
-      connectionManager.send(username, gson.toJson(loadGameMessage));
-      connectionManager.broadcast(command.getGameID(), username, createNotificationMessage("Move made"));
-
+      recordMove(gameData, username, move);
+      playComputerMove(gameData, session);
 
     } catch (InvalidMoveException e) {
       session.getRemote().sendString(createErrorMessage("Invalid move: " + e.getMessage()));
@@ -171,6 +195,127 @@ public class WebsocketHandler {
 
 
 
+  /**
+   * Saves a move that was just made and tells everyone in the game about it,
+   * including any check, checkmate, stalemate or draw it caused, or a tablebase
+   * result that ends the game early
+   */
+  private void recordMove(GameData gameData, String username, ChessMove move) throws IOException, DataAccessException {
+    ChessGame game = gameData.game();
+    ChessGame.TeamColor opponentColor = game.getTeamTurn();
+    ChessGame.GameStatus status = game.getGameStatus(opponentColor);
+    String adjudication = null;
+    if (status.isGameOver()) {
+      game.setGameOver(true);
+    } else {
+      adjudication = adjudicate(gameData);
+    }
+    if (game.isGameOver()) {
+      engineService.cancelGame(gameData.gameID());
+    }
+    dataAccess.appendMove(gameData.gameID(), move, game);
+
+    // Notify other players with an updated game state
+    LoadGameMessage loadGameMessage = new LoadGameMessage(
+            gameData.gameID(),
+            gameData.whiteUsername(),
+            gameData.blackUsername(),
+            gameData.gameName(),
+            game
+    );
+
+    connectionManager.broadcast(gameData.gameID(), username, gson.toJson(loadGameMessage));
+    connectionManager.send(username, gson.toJson(loadGameMessage));
+    connectionManager.broadcast(gameData.gameID(), username, createNotificationMessage(username + " moved " + move));
+
+    // Report check, checkmate and stalemate from the status computed above
+    String statusMessage = describeStatus(status, gameData.username(opponentColor));
+    if (statusMessage != null) {
+      connectionManager.broadcast(gameData.gameID(), null, createNotificationMessage(statusMessage));
+    }
+    if (adjudication != null) {
+      connectionManager.broadcast(gameData.gameID(), null, createNotificationMessage(adjudication));
+    }
+  }
+
+  /**
+   * Ends a game the tablebases have settled: a draw always, and a loss when the
+   * computer is the side that loses, so it resigns instead of playing on
+   *
+   * @return the announcement, or null if the game goes on
+   */
+  private String adjudicate(GameData gameData) {
+    ChessGame game = gameData.game();
+    TablebaseResult result = game.probeTablebases();
+    if (result == null) {
+      return null;
+    }
+    if (result.outcome() == TablebaseResult.Outcome.DRAW) {
+      game.setGameOver(true);
+      return "Neither side can force checkmate. The game is drawn.";
+    }
+    ChessGame.TeamColor loser = result.outcome() == TablebaseResult.Outcome.LOSS
+            ? game.getTeamTurn() : game.getTeamTurn().opponent();
+    if (!GameData.COMPUTER_USERNAME.equals(gameData.username(loser))) {
+      return null;
+    }
+    game.setGameOver(true);
+    return gameData.username(loser) + " resigns: " + gameData.username(loser.opponent()) + " mates in "
+            + result.movesToMate() + (result.movesToMate() == 1 ? " move." : " moves.");
+  }
+
+  /**
+   * Plays the computer's reply if it holds the seat whose turn it is. A book move
+   * is played at once; otherwise a search is queued and its move played when it
+   * finishes, unless the game has moved on by then.
+   */
+  private void playComputerMove(GameData gameData, Session session) throws IOException, DataAccessException {
+    if (!gameData.isComputerTurn() || gameData.game().isGameOver()) {
+      return;
+    }
+    ChessMove bookMove = openingBook.lookup(gameData.game());
+    if (bookMove != null) {
+      try {
+        gameData.game().makeMove(bookMove);
+      } catch (InvalidMoveException e) {
+        throw new IllegalStateException("Book move was checked but is illegal", e);
+      }
+      recordMove(gameData, GameData.COMPUTER_USERNAME, bookMove);
+      return;
+    }
+    long positionKey = gameData.game().getPositionKey();
+    engineService.submit(EngineService.Priority.GAME_MOVE, gameData.gameID(), session, gameData.game(),
+                    COMPUTER_LIMITS, COMPUTER_DEADLINE_MILLIS)
+            .thenAccept(result -> applyComputerMove(gameData.gameID(), positionKey, result));
+  }
+
+  /**
+   * Plays a finished search's move. Runs on an engine thread, so it takes the
+   * game's lock like the WebSocket commands do.
+   */
+  private void applyComputerMove(int gameID, long positionKey, SearchResult result) {
+    if (result.bestMove() == null) {
+      return;
+    }
+    synchronized (gameLock(gameID)) {
+      applyComputerMoveLocked(gameID, positionKey, result);
+    }
+  }
+
+  private void applyComputerMoveLocked(int gameID, long positionKey, SearchResult result) {
+    try {
+      GameData gameData = dataAccess.getGame(gameID);
+      if (gameData == null || !gameData.isComputerTurn() || gameData.game().isGameOver()
+              || gameData.game().getPositionKey() != positionKey) {
+        return;
+      }
+      gameData.game().makeMove(result.bestMove());
+      recordMove(gameData, GameData.COMPUTER_USERNAME, result.bestMove());
+    } catch (IOException | DataAccessException | InvalidMoveException e) {
+      System.err.println("Computer move failed: " + e.getMessage());
+    }
+  }
+
   private void handleLeave(Session session, String username, UserGameCommand command) throws IOException, DataAccessException {
     GameData gameData = dataAccess.getGame(command.getGameID());
     if (gameData == null) {
@@ -217,6 +362,7 @@ public class WebsocketHandler {
 
     // Remove the user from the connection manager
     connectionManager.remove(command.getGameID(), username);
+    analysisService.unsubscribe(session);
 
     // Notify the client that they have left the game
 
@@ -249,6 +395,7 @@ public class WebsocketHandler {
     // Mark the game as over
     game.setGameOver(true);
     dataAccess.updateGame(command.getGameID(), gameData);
+    engineService.cancelGame(command.getGameID());
 
     // Broadcast resignation notification
     String resigningPlayer = isWhitePlayer ? "White" : "Black";
@@ -257,6 +404,57 @@ public class WebsocketHandler {
   }
 
 
+  /**
+   * Streams the engine's analysis of the game's position to the asker, sharing
+   * the work with anyone else analyzing the same position
+   */
+  private void handleAnalyze(Session session, String username, UserGameCommand command) throws IOException, DataAccessException {
+    GameData gameData = dataAccess.getGame(command.getGameID());
+    if (gameData == null) {
+      session.getRemote().sendString(createErrorMessage("Game not found."));
+      return;
+    }
+
+    ChessGame game = gameData.game();
+    boolean isPlayer = username.equals(gameData.whiteUsername()) || username.equals(gameData.blackUsername());
+    if (isPlayer && !game.isGameOver()) {
+      session.getRemote().sendString(createErrorMessage("Players cannot analyze a game in progress."));
+      return;
+    }
+
+    // Engine scores are from the side to move; spectators get them from white's side
+    int sign = game.getTeamTurn() == ChessGame.TeamColor.WHITE ? 1 : -1;
+    try {
+      // Updates arrive on engine threads, which must not wait on a slow client
+      analysisService.analyze(game, session, (result, finished) -> {
+        if (!session.isOpen()) {
+          return;
+        }
+        if (result == null) {
+          session.getRemote().sendStringByFuture(createErrorMessage("Analysis stopped before it found anything."));
+          return;
+        }
+        AnalysisMessage analysisMessage = new AnalysisMessage(gameData.gameID(), result.depth(),
+                sign * result.score(), sign * result.mateIn(), result.bestMove(), result.principalVariation(),
+                result.nodes(), finished);
+        session.getRemote().sendStringByFuture(gson.toJson(analysisMessage));
+      });
+    } catch (RejectedExecutionException e) {
+      session.getRemote().sendString(createErrorMessage("The engine is busy. Try again shortly."));
+    }
+  }
+
+  private String describeStatus(ChessGame.GameStatus status, String player) {
+    return switch (status) {
+      case CHECK -> player + " is in check.";
+      case CHECKMATE -> player + " is in checkmate. The game is over.";
+      case STALEMATE -> player + " is in stalemate. The game is over.";
+      case THREEFOLD_REPETITION -> "The same position has occurred three times. The game is drawn.";
+      case FIFTY_MOVE_RULE -> "Fifty moves have passed without a capture or pawn move. The game is drawn.";
+      case NORMAL -> null;
+    };
+  }
+
   private String createErrorMessage(String error) {
     ErrorMessage errorMessage = new ErrorMessage(error);
     return gson.toJson(errorMessage);
@@ -0,0 +1,228 @@
+package service;
+
+import chess.ChessGame;
+import chess.SearchLimits;
+import chess.SearchResult;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Analyzes positions for the people watching a game, one engine job per position.
+ * <p>
+ * Analyses are keyed by {@link ChessGame#getPositionKey()}. Everyone who asks
+ * about a position while it is being analyzed subscribes to the same job and
+ * hears about each iteration as it finishes; anyone who asks later is answered
+ * from the finished result. Finished analyses are kept until newer ones push the
+ * least recently used out. A job is cancelled once nobody is listening to it.
+ * <p>
+ * Jobs are shared between games, so they are submitted under {@link #NO_GAME}
+ * and only stopped by {@link #unsubscribe}, never by a game ending.
+ */
+public class AnalysisService {
+
+    /**
+     * Hears about an analysis as it deepens
+     */
+    public interface Listener {
+        /**
+         * @param result   the analysis so far, or null if it failed before finishing
+         *                 an iteration
+         * @param finished True if this is the last update
+         */
+        void update(SearchResult result, boolean finished);
+    }
+
+    public static final SearchLimits DEFAULT_LIMITS = SearchLimits.time(5_000);
+    private static final long DEADLINE_MILLIS = 30_000;
+    // No game's id, so EngineService#cancelGame never stops a shared analysis
+    private static final int NO_GAME = -1;
+
+    private final EngineService engineService;
+    private final int maxCached;
+    private final SearchLimits limits;
+    private final Map<Long, Analysis> analyses = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param engineService runs the analyses
+     * @param maxCached     how many analyses to keep; running ones are never dropped,
+     *                      and the engine's queue limits how many can run
+     * @param limits        how long to analyze each position
+     */
+    public AnalysisService(EngineService engineService, int maxCached, SearchLimits limits) {
+        this.engineService = engineService;
+        this.maxCached = maxCached;
+        this.limits = limits;
+    }
+
+    /**
+     * Sends a listener the analysis of a game's position, starting it unless it is
+     * already running or finished. The listener gets what is known so far right
+     * away, then every later iteration.
+     *
+     * @param game     the position to analyze
+     * @param owner    who is listening, for {@link #unsubscribe}
+     * @param listener receives the updates
+     * @throws RejectedExecutionException if the engine is too busy to start a new analysis
+     */
+    public void analyze(ChessGame game, Object owner, Listener listener) {
+        long positionKey = game.getPositionKey();
+        Analysis analysis;
+        boolean start;
+        synchronized (this) {
+            analysis = analyses.get(positionKey);
+            start = analysis == null;
+            if (start) {
+                analysis = new Analysis(positionKey);
+                analyses.put(positionKey, analysis);
+                trim();
+            }
+        }
+        analysis.subscribe(owner, listener);
+        if (!start) {
+            return;
+        }
+        Analysis started = analysis;
+        CompletableFuture<SearchResult> job;
+        try {
+            job = engineService.submit(EngineService.Priority.ANALYSIS, NO_GAME, null, game, limits,
+                    DEADLINE_MILLIS, started::progress);
+        } catch (RejectedExecutionException e) {
+            started.finish(null, e);
+            throw e;
+        }
+        started.start(job);
+        job.whenComplete(started::finish);
+    }
+
+    /**
+     * Stops sending updates to an owner, cancelling analyses nobody else is following
+     */
+    public void unsubscribe(Object owner) {
+        List<Analysis> running;
+        synchronized (this) {
+            running = new ArrayList<>(analyses.values());
+        }
+        for (Analysis analysis : running) {
+            analysis.unsubscribe(owner);
+        }
+    }
+
+    /**
+     * @return how many analyses are running or kept
+     */
+    public synchronized int size() {
+        return analyses.size();
+    }
+
+    private synchronized void forget(Analysis analysis) {
+        analyses.remove(analysis.positionKey, analysis);
+    }
+
+    /**
+     * Drops the least recently used finished analyses until at most maxCached are
+     * kept, skipping over running ones wherever they are in the order
+     */
+    private synchronized void trim() {
+        Iterator<Analysis> oldestFirst = analyses.values().iterator();
+        while (analyses.size() > maxCached && oldestFirst.hasNext()) {
+            if (oldestFirst.next().isFinished()) {
+                oldestFirst.remove();
+            }
+        }
+    }
+
+    private final class Analysis {
+        private final long positionKey;
+        private final Map<Object, Listener> listeners = new LinkedHashMap<>();
+        private volatile CompletableFuture<SearchResult> job;
+        private SearchResult latest;
+        private boolean finished;
+
+        Analysis(long positionKey) {
+            this.positionKey = positionKey;
+        }
+
+        synchronized boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * Records the engine job, cancelling it if everyone stopped listening
+         * before it was submitted
+         */
+        void start(CompletableFuture<SearchResult> job) {
+            this.job = job;
+            boolean abandoned;
+            synchronized (this) {
+                abandoned = listeners.isEmpty() && !finished;
+            }
+            if (abandoned) {
+                job.cancel(true);
+            }
+        }
+
+        void subscribe(Object owner, Listener listener) {
+            SearchResult known;
+            boolean done;
+            synchronized (this) {
+                known = latest;
+                done = finished;
+                if (!done) {
+                    listeners.put(owner, listener);
+                }
+            }
+            if (known != null || done) {
+                listener.update(known, done);
+            }
+        }
+
+        void unsubscribe(Object owner) {
+            boolean abandoned;
+            synchronized (this) {
+                abandoned = listeners.remove(owner) != null && listeners.isEmpty() && !finished;
+            }
+            if (abandoned && job != null) {
+                job.cancel(true);
+            }
+        }
+
+        void progress(SearchResult result) {
+            List<Listener> current;
+            synchronized (this) {
+                latest = result;
+                current = new ArrayList<>(listeners.values());
+            }
+            for (Listener listener : current) {
+                listener.update(result, false);
+            }
+        }
+
+        void finish(SearchResult result, Throwable error) {
+            List<Listener> current;
+            synchronized (this) {
+                if (result != null) {
+                    latest = result;
+                }
+                finished = true;
+                current = new ArrayList<>(listeners.values());
+                listeners.clear();
+                result = latest;
+            }
+            if (error != null) {
+                // a cancelled or failed analysis is not worth keeping; the next request starts over
+                forget(this);
+            } else {
+                trim();
+            }
+            for (Listener listener : current) {
+                listener.update(result, true);
+            }
+        }
+    }
+}
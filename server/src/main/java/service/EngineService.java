@@ -0,0 +1,291 @@
+package service;
+
+import chess.ChessGame;
+import chess.Engine;
+import chess.SearchLimits;
+import chess.SearchResult;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Runs engine searches on a dedicated pool of worker threads, so CPU-heavy
+ * searches never tie up the threads serving HTTP requests and WebSocket messages.
+ * <p>
+ * Waiting jobs are taken by priority, then in the order they were submitted. Each
+ * worker owns an {@link Engine}, and each engine spreads its search over
+ * {@code threadsPerSearch} threads. A job that is still waiting when its deadline
+ * passes fails with a {@link TimeoutException}; one that starts in time searches
+ * no longer than its deadline allows. Jobs can be cancelled one at a time through
+ * their future, or together by game or by owner, such as the socket that asked.
+ * <p>
+ * The pool size, threads per search and queue limit default to the system
+ * properties {@code chess.engine.workers}, {@code chess.engine.threads} and
+ * {@code chess.engine.queue}.
+ */
+public class EngineService implements AutoCloseable {
+
+    /**
+     * Job classes, most urgent first
+     */
+    public enum Priority {
+        GAME_MOVE,
+        HINT,
+        ANALYSIS
+    }
+
+    /**
+     * A snapshot of the service's load
+     *
+     * @param queued    waiting jobs of each priority
+     * @param running   jobs searching right now
+     * @param completed jobs that finished with a result
+     * @param cancelled jobs cancelled before they finished
+     * @param expired   jobs that were still waiting at their deadline
+     * @param rejected  jobs turned away because the queue was full
+     */
+    public record Metrics(Map<Priority, Integer> queued, int running, long completed, long cancelled,
+                          long expired, long rejected) {
+    }
+
+    private final ThreadPoolExecutor pool;
+    private final List<Engine> engines;
+    private final BlockingQueue<Engine> idleEngines;
+    private final int maxQueued;
+    private final Set<Job> jobs = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public EngineService() {
+        this(Integer.getInteger("chess.engine.workers", 2),
+                Integer.getInteger("chess.engine.threads",
+                        Math.max(1, Runtime.getRuntime().availableProcessors() / 2)),
+                Integer.getInteger("chess.engine.queue", 64));
+    }
+
+    /**
+     * @param workers          how many searches run at once
+     * @param threadsPerSearch how many threads each search uses
+     * @param maxQueued        how many jobs may wait before hints and analysis are
+     *                         turned away; game moves are always accepted
+     */
+    public EngineService(int workers, int threadsPerSearch, int maxQueued) {
+        idleEngines = new ArrayBlockingQueue<>(workers);
+        for (int i = 0; i < workers; i++) {
+            idleEngines.add(new Engine(Engine.DEFAULT_TABLE_ENTRIES, threadsPerSearch));
+        }
+        engines = List.copyOf(idleEngines);
+        this.maxQueued = maxQueued;
+        AtomicInteger threadNumber = new AtomicInteger();
+        pool = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "engine-worker-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Queues a search. The game is copied, so the caller may keep changing it.
+     * Cancelling the returned future cancels the job, stopping it if it is running.
+     *
+     * @param priority       how urgent the job is
+     * @param gameID         the game the job belongs to, for {@link #cancelGame}
+     * @param owner          who asked for the job, for {@link #cancelOwner}; may be null
+     * @param game           the position to search
+     * @param limits         when the search should stop
+     * @param deadlineMillis how long from now the result is still wanted
+     * @return the search result
+     * @throws RejectedExecutionException if the queue is full, or the service is closed
+     */
+    public CompletableFuture<SearchResult> submit(Priority priority, int gameID, Object owner, ChessGame game,
+                                                  SearchLimits limits, long deadlineMillis) {
+        return submit(priority, gameID, owner, game, limits, deadlineMillis, null);
+    }
+
+    /**
+     * Queues a search that reports each finished iteration as it goes
+     *
+     * @param progress called on the worker thread with the search so far; may be null
+     * @see #submit(Priority, int, Object, ChessGame, SearchLimits, long)
+     */
+    public CompletableFuture<SearchResult> submit(Priority priority, int gameID, Object owner, ChessGame game,
+                                                  SearchLimits limits, long deadlineMillis,
+                                                  Consumer<SearchResult> progress) {
+        if (priority != Priority.GAME_MOVE && pool.getQueue().size() >= maxQueued) {
+            rejected.increment();
+            throw new RejectedExecutionException("Engine queue is full");
+        }
+        // a copy with the game's history, so the search sees repetitions of earlier positions
+        Job job = new Job(priority, gameID, owner, game.copy(), limits,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis), progress);
+        jobs.add(job);
+        job.result.whenComplete((result, error) -> {
+            if (job.result.isCancelled()) {
+                job.cancel(true);
+            }
+        });
+        try {
+            pool.execute(job);
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job);
+            rejected.increment();
+            throw e;
+        }
+        return job.result;
+    }
+
+    /**
+     * Cancels every waiting or running job for a game
+     */
+    public void cancelGame(int gameID) {
+        for (Job job : jobs) {
+            if (job.gameID == gameID) {
+                job.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Cancels every waiting or running job submitted for an owner
+     */
+    public void cancelOwner(Object owner) {
+        for (Job job : jobs) {
+            if (job.owner != null && job.owner.equals(owner)) {
+                job.cancel(true);
+            }
+        }
+    }
+
+    public Metrics metrics() {
+        Map<Priority, Integer> queued = new EnumMap<>(Priority.class);
+        for (Priority priority : Priority.values()) {
+            queued.put(priority, 0);
+        }
+        for (Job job : jobs) {
+            if (!job.started) {
+                queued.merge(job.priority, 1, Integer::sum);
+            }
+        }
+        return new Metrics(queued, running.get(), completed.sum(), cancelled.sum(), expired.sum(), rejected.sum());
+    }
+
+    /**
+     * Cancels every job and stops the workers
+     */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+        for (Job job : jobs) {
+            job.cancel(true);
+        }
+        for (Engine engine : engines) {
+            engine.close();
+        }
+    }
+
+    private final class Job extends FutureTask<SearchResult> implements Comparable<Job> {
+        private final CompletableFuture<SearchResult> result = new CompletableFuture<>();
+        private final Priority priority;
+        private final long order = sequence.getAndIncrement();
+        private final int gameID;
+        private final Object owner;
+        private volatile boolean started;
+
+        Job(Priority priority, int gameID, Object owner, ChessGame game, SearchLimits limits, long deadline,
+            Consumer<SearchResult> progress) {
+            super(() -> {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    throw new TimeoutException("Engine job expired before it started");
+                }
+                SearchLimits bounded = new SearchLimits(limits.depth(), limits.nodes(),
+                        Math.min(limits.millis(), remaining));
+                // at most one job per worker runs, so an engine is always free
+                Engine engine = idleEngines.take();
+                try {
+                    return engine.search(game, bounded, progress);
+                } finally {
+                    idleEngines.add(engine);
+                }
+            });
+            this.priority = priority;
+            this.gameID = gameID;
+            this.owner = owner;
+        }
+
+        @Override
+        public void run() {
+            started = true;
+            if (isDone()) {
+                return;
+            }
+            running.incrementAndGet();
+            try {
+                super.run();
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelledNow = super.cancel(mayInterruptIfRunning);
+            if (cancelledNow) {
+                pool.remove(this);
+            }
+            return cancelledNow;
+        }
+
+        @Override
+        protected void done() {
+            jobs.remove(this);
+            // count before completing, so whoever waits on the result sees the metrics include it
+            if (isCancelled()) {
+                cancelled.increment();
+                result.cancel(false);
+                return;
+            }
+            try {
+                SearchResult found = get();
+                completed.increment();
+                result.complete(found);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof TimeoutException) {
+                    expired.increment();
+                }
+                result.completeExceptionally(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(order, other.order);
+        }
+    }
+}
@@ -36,6 +36,15 @@ public class GameService {
   }
   public void joinGame(String authToken, String color, int gameID) throws UnauthorizedException,
           DataAccessException, BadRequestException, AlreadyTakenException {
+    joinGame(authToken, color, gameID, false);
+  }
+
+  /**
+   * Seats the user in a color and, if {@code computerOpponent} is set, the
+   * computer player in the other one
+   */
+  public void joinGame(String authToken, String color, int gameID, boolean computerOpponent) throws UnauthorizedException,
+          DataAccessException, BadRequestException, AlreadyTakenException {
     if(dataAccess.getAuth(authToken) == null){
       throw new UnauthorizedException("Unauthorized");
     }
@@ -45,6 +54,12 @@ public class GameService {
     if(color == null){
       throw new BadRequestException("Need player color");
     }
+    if(computerOpponent){
+      GameData current = dataAccess.getGame(gameID);
+      if(color.equals("WHITE") ? current.blackUsername() != null : current.whiteUsername() != null){
+        throw new AlreadyTakenException("Already taken");
+      }
+    }
     if(color.equals("WHITE")){
       if(dataAccess.getGame(gameID).whiteUsername() != null){
         throw new AlreadyTakenException("Already taken");
@@ -65,6 +80,13 @@ public class GameService {
         dataAccess.updateGame(gameID, game);
       }
     }
+    if(computerOpponent && (color.equals("WHITE") || color.equals("BLACK"))){
+      GameData joined = dataAccess.getGame(gameID);
+      GameData game = color.equals("WHITE")
+              ? new GameData(gameID, joined.whiteUsername(), GameData.COMPUTER_USERNAME, joined.gameName(), joined.game())
+              : new GameData(gameID, GameData.COMPUTER_USERNAME, joined.blackUsername(), joined.gameName(), joined.game());
+      dataAccess.updateGame(gameID, game);
+    }
 
   }
 
@@ -0,0 +1,133 @@
+package service;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.OpeningBook;
+import chess.OpeningBookBuilder;
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import model.AuthData;
+import model.GameData;
+import service.serviceexceptions.TooManyRequestsException;
+import service.serviceexceptions.UnauthorizedException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the server's opening book, so the computer answers the most common
+ * openings without searching.
+ * <p>
+ * The book can be rebuilt from the games in the database, or reloaded after a new
+ * file is copied into place, while the server runs. Either way the new book is
+ * swapped in with one write; lookups in flight finish on the old one.
+ * <p>
+ * Only operators may change the book. A rebuild reads every stored game, so only
+ * one runs at a time and each must wait a while after the last one started; a
+ * reload only opens the file and is never held up by a rebuild.
+ */
+public class OpeningBookService {
+
+  private final DataAccess dataAccess;
+  private final Path file;
+  private final int maxPly;
+  private final Set<String> operators;
+  private final long rebuildIntervalNanos;
+  private final ReentrantLock rebuilding = new ReentrantLock();
+  private long lastRebuild;
+  private boolean rebuilt;
+  private volatile OpeningBook book = OpeningBook.EMPTY;
+
+  /**
+   * @param file                  where the book is kept; it need not exist yet
+   * @param maxPly                how many plies of each game a rebuilt book covers
+   * @param operators             the usernames allowed to rebuild or reload the book
+   * @param rebuildIntervalMillis how long after one rebuild starts the next may
+   */
+  public OpeningBookService(DataAccess dataAccess, Path file, int maxPly, Set<String> operators,
+                            long rebuildIntervalMillis) {
+    this.dataAccess = dataAccess;
+    this.file = file;
+    this.maxPly = maxPly;
+    this.operators = Set.copyOf(operators);
+    this.rebuildIntervalNanos = TimeUnit.MILLISECONDS.toNanos(rebuildIntervalMillis);
+    try {
+      load();
+    } catch (IOException e) {
+      System.err.println("Could not load opening book " + file + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * @return the book move for a game, or null if its position is not in the book
+   */
+  public ChessMove lookup(ChessGame game) {
+    return book.lookup(game);
+  }
+
+  /**
+   * @return how many entries the current book holds
+   */
+  public int size() {
+    return book.size();
+  }
+
+  /**
+   * Rebuilds the book from every stored game and starts using it
+   *
+   * @return how many entries the new book holds
+   * @throws TooManyRequestsException if a rebuild is running or started too recently
+   */
+  public int rebuild(String authToken)
+          throws DataAccessException, IOException, UnauthorizedException, TooManyRequestsException {
+    authorize(authToken);
+    if (!rebuilding.tryLock()) {
+      throw new TooManyRequestsException("The opening book is already being rebuilt");
+    }
+    try {
+      long now = System.nanoTime();
+      if (rebuilt && now - lastRebuild < rebuildIntervalNanos) {
+        throw new TooManyRequestsException("The opening book was rebuilt too recently");
+      }
+      lastRebuild = now;
+      rebuilt = true;
+
+      OpeningBookBuilder builder = new OpeningBookBuilder(maxPly);
+      for (GameData game : dataAccess.listGames()) {
+        builder.addGame(dataAccess.getMoves(game.gameID()));
+      }
+      // the builder replaces the file in one move, so a reload never reads half of it
+      builder.write(file);
+      load();
+      return size();
+    } finally {
+      rebuilding.unlock();
+    }
+  }
+
+  /**
+   * Starts using the book file as it is now on disk
+   *
+   * @return how many entries the book holds
+   */
+  public int reload(String authToken) throws DataAccessException, IOException, UnauthorizedException {
+    authorize(authToken);
+    load();
+    return size();
+  }
+
+  private void authorize(String authToken) throws DataAccessException, UnauthorizedException {
+    AuthData auth = dataAccess.getAuth(authToken);
+    if (auth == null || !operators.contains(auth.username())) {
+      throw new UnauthorizedException("Unauthorized");
+    }
+  }
+
+  private void load() throws IOException {
+    book = Files.exists(file) ? OpeningBook.open(file) : OpeningBook.EMPTY;
+  }
+}
@@ -2,6 +2,7 @@ package service;
 
 import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
+import model.GameData;
 import model.UserData;
 import model.AuthData;
 import org.mindrot.jbcrypt.BCrypt;
@@ -22,6 +23,9 @@ public class UserService {
     if (user.username() == null || user.password() == null || user.email() == null){
       throw new BadRequestException("Bad request");
     }
+    else if (user.username().equals(GameData.COMPUTER_USERNAME)){
+      throw new AlreadyTakenException("Username is Taken");
+    }
     else if (dataAccess.getUser(user.username()) == null){
       dataAccess.createUser(user);
       return dataAccess.createAuth(new AuthData(UUID.randomUUID().toString(),user.username()));
@@ -0,0 +1,7 @@
+package service.serviceexceptions;
+
+public class TooManyRequestsException extends Exception{
+  public TooManyRequestsException(String message){
+    super(message);
+  }
+}
@@ -1,6 +1,9 @@
 package dataaccess;
 
 import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
 import exception.ResponseException;
 import model.AuthData;
 import model.GameData;
@@ -210,6 +213,31 @@ public class DataAccessTests {
   }
   @ParameterizedTest
   @ValueSource(classes = {MySqlDataAccess.class, MemoryDataAccess.class})
+  void appendMove(Class<? extends DataAccess> dbClass) throws ResponseException, DataAccessException, InvalidMoveException {
+    DataAccess dataAccess = getDataAccess(dbClass);
+    GameData addedGame = dataAccess.createGame(new GameData(1, "alice", "bob", "Logged Match", new ChessGame()));
+
+    ChessGame game = new ChessGame();
+    ChessMove first = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+    ChessMove second = new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null);
+    game.makeMove(first);
+    dataAccess.appendMove(addedGame.gameID(), first, game);
+    game.makeMove(second);
+    dataAccess.appendMove(addedGame.gameID(), second, game);
+
+    assertEquals(game, dataAccess.getGame(addedGame.gameID()).game(), "Game should include the appended moves");
+    assertEquals(List.of(first, second), dataAccess.getMoves(addedGame.gameID()), "Moves should be returned in order");
+  }
+  @ParameterizedTest
+  @ValueSource(classes = {MySqlDataAccess.class, MemoryDataAccess.class})
+  void failAppendMove(Class<? extends DataAccess> dbClass) throws ResponseException, DataAccessException {
+    DataAccess dataAccess = getDataAccess(dbClass);
+    ChessMove move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+    assertThrows(DataAccessException.class, () -> dataAccess.appendMove(999, move, new ChessGame()),
+            "Expected appendMove to throw DataAccessException for a non-existent game ID");
+  }
+  @ParameterizedTest
+  @ValueSource(classes = {MySqlDataAccess.class, MemoryDataAccess.class})
   void clear(Class<? extends DataAccess> dbClass) throws ResponseException, DataAccessException {
     DataAccess dataAccess = getDataAccess(dbClass);
     var game = new GameData(1, "wusername", "busername", "chessName", chessGame);
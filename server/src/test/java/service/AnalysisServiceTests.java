@@ -0,0 +1,109 @@
+package service;
+
+import chess.ChessGame;
+import chess.SearchLimits;
+import chess.SearchResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AnalysisServiceTests {
+  EngineService engineService = null;
+  AnalysisService analysisService = null;
+  ChessGame game = new ChessGame();
+
+  @BeforeEach
+  void setup() {
+    engineService = new EngineService(1, 1, 8);
+    analysisService = new AnalysisService(engineService, 4, SearchLimits.depth(4));
+  }
+
+  @AfterEach
+  void tearDown() {
+    engineService.close();
+  }
+
+  @Test
+  void testSharedAnalysis() throws Exception {
+    CompletableFuture<SearchResult> first = new CompletableFuture<>();
+    CompletableFuture<SearchResult> second = new CompletableFuture<>();
+    List<SearchResult> updates = new CopyOnWriteArrayList<>();
+    analysisService.analyze(game, "first", (result, finished) -> {
+      updates.add(result);
+      if (finished) {
+        first.complete(result);
+      }
+    });
+    analysisService.analyze(new ChessGame(), "second", (result, finished) -> {
+      if (finished) {
+        second.complete(result);
+      }
+    });
+
+    SearchResult result = first.get(20, TimeUnit.SECONDS);
+    assertSame(result, second.get(20, TimeUnit.SECONDS));
+    assertNotNull(result.bestMove());
+    assertTrue(updates.size() > 1);
+    assertEquals(1, engineService.metrics().completed());
+    assertEquals(1, analysisService.size());
+  }
+
+  @Test
+  void testCachedAnalysis() throws Exception {
+    CompletableFuture<SearchResult> first = new CompletableFuture<>();
+    analysisService.analyze(game, "first", (result, finished) -> {
+      if (finished) {
+        first.complete(result);
+      }
+    });
+    SearchResult result = first.get(20, TimeUnit.SECONDS);
+
+    List<Boolean> finishedFlags = new CopyOnWriteArrayList<>();
+    analysisService.analyze(game, "later", (cached, finished) -> {
+      assertSame(result, cached);
+      finishedFlags.add(finished);
+    });
+    assertEquals(List.of(true), finishedFlags);
+    assertEquals(1, engineService.metrics().completed());
+  }
+
+  @Test
+  void testUnsubscribe() throws Exception {
+    analysisService = new AnalysisService(engineService, 4, SearchLimits.time(60_000));
+    CompletableFuture<Boolean> stopped = new CompletableFuture<>();
+    analysisService.analyze(game, "first", (result, finished) -> {
+      if (finished) {
+        stopped.complete(true);
+      }
+    });
+    analysisService.analyze(game, "second", (result, finished) -> { });
+
+    analysisService.unsubscribe("first");
+    assertEquals(0, engineService.metrics().cancelled());
+    analysisService.unsubscribe("second");
+    assertEquals(1, engineService.metrics().cancelled());
+    assertFalse(stopped.isDone());
+    assertEquals(0, analysisService.size());
+
+    analysisService.analyze(game, "third", (result, finished) -> { });
+    assertEquals(1, analysisService.size());
+  }
+
+  @Test
+  void testGameCancelKeepsAnalysis() {
+    analysisService = new AnalysisService(engineService, 4, SearchLimits.time(60_000));
+    analysisService.analyze(game, "first", (result, finished) -> { });
+
+    engineService.cancelGame(1);
+    assertEquals(0, engineService.metrics().cancelled());
+    analysisService.unsubscribe("first");
+    assertEquals(1, engineService.metrics().cancelled());
+  }
+}
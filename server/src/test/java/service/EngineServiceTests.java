@@ -0,0 +1,109 @@
+package service;
+
+import chess.ChessGame;
+import chess.SearchLimits;
+import chess.SearchResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EngineServiceTests {
+  EngineService engineService = null;
+  ChessGame game = new ChessGame();
+
+  @BeforeEach
+  void setup() {
+    engineService = new EngineService(1, 1, 2);
+  }
+
+  @AfterEach
+  void tearDown() {
+    engineService.close();
+  }
+
+  @Test
+  void testSubmit() throws Exception {
+    SearchResult result = engineService.submit(EngineService.Priority.GAME_MOVE, 1, null, game,
+            SearchLimits.depth(2), 10_000).get(10, TimeUnit.SECONDS);
+    assertNotNull(result.bestMove());
+    assertEquals(1, engineService.metrics().completed());
+  }
+
+  @Test
+  void testPriorityOrder() throws Exception {
+    CompletableFuture<SearchResult> busy = engineService.submit(EngineService.Priority.ANALYSIS, 1, null, game,
+            SearchLimits.time(300), 10_000);
+    List<EngineService.Priority> finished = new CopyOnWriteArrayList<>();
+    CompletableFuture<Void> analysis = engineService.submit(EngineService.Priority.ANALYSIS, 2, null, game,
+            SearchLimits.depth(1), 10_000).thenRun(() -> finished.add(EngineService.Priority.ANALYSIS));
+    CompletableFuture<Void> move = engineService.submit(EngineService.Priority.GAME_MOVE, 3, null, game,
+            SearchLimits.depth(1), 10_000).thenRun(() -> finished.add(EngineService.Priority.GAME_MOVE));
+
+    CompletableFuture.allOf(busy, analysis, move).get(10, TimeUnit.SECONDS);
+    assertEquals(List.of(EngineService.Priority.GAME_MOVE, EngineService.Priority.ANALYSIS), finished);
+  }
+
+  @Test
+  void testCancelGame() throws Exception {
+    CompletableFuture<SearchResult> running = engineService.submit(EngineService.Priority.GAME_MOVE, 1, null, game,
+            SearchLimits.time(60_000), 120_000);
+    CompletableFuture<SearchResult> waiting = engineService.submit(EngineService.Priority.GAME_MOVE, 1, null, game,
+            SearchLimits.time(60_000), 120_000);
+    Thread.sleep(50);
+    engineService.cancelGame(1);
+
+    assertTrue(running.isCancelled());
+    assertTrue(waiting.isCancelled());
+    SearchResult next = engineService.submit(EngineService.Priority.GAME_MOVE, 2, null, game,
+            SearchLimits.depth(1), 10_000).get(10, TimeUnit.SECONDS);
+    assertNotNull(next.bestMove());
+    assertEquals(2, engineService.metrics().cancelled());
+  }
+
+  @Test
+  void testCancelOwner() throws Exception {
+    Object owner = new Object();
+    CompletableFuture<SearchResult> owned = engineService.submit(EngineService.Priority.HINT, 1, owner, game,
+            SearchLimits.time(60_000), 120_000);
+    engineService.cancelOwner(new Object());
+    assertFalse(owned.isDone());
+    engineService.cancelOwner(owner);
+    assertTrue(owned.isCancelled());
+  }
+
+  @Test
+  void testExpired() throws Exception {
+    engineService.submit(EngineService.Priority.GAME_MOVE, 1, null, game, SearchLimits.time(300), 10_000);
+    CompletableFuture<SearchResult> late = engineService.submit(EngineService.Priority.GAME_MOVE, 2, null, game,
+            SearchLimits.depth(1), 50);
+
+    ExecutionException e = assertThrows(ExecutionException.class, () -> late.get(10, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof TimeoutException);
+    assertEquals(1, engineService.metrics().expired());
+  }
+
+  @Test
+  void testQueueFull() {
+    engineService.submit(EngineService.Priority.ANALYSIS, 1, null, game, SearchLimits.time(60_000), 120_000);
+    engineService.submit(EngineService.Priority.ANALYSIS, 2, null, game, SearchLimits.depth(1), 120_000);
+    engineService.submit(EngineService.Priority.ANALYSIS, 3, null, game, SearchLimits.depth(1), 120_000);
+
+    assertThrows(RejectedExecutionException.class, () -> engineService.submit(EngineService.Priority.HINT, 4, null,
+            game, SearchLimits.depth(1), 120_000));
+    engineService.submit(EngineService.Priority.GAME_MOVE, 5, null, game, SearchLimits.depth(1), 120_000);
+
+    EngineService.Metrics metrics = engineService.metrics();
+    assertEquals(1, metrics.rejected());
+    assertEquals(1, (int) metrics.queued().get(EngineService.Priority.GAME_MOVE));
+  }
+}
@@ -0,0 +1,90 @@
+package service;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import dataaccess.DataAccessException;
+import dataaccess.MemoryDataAccess;
+import model.AuthData;
+import model.GameData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.serviceexceptions.TooManyRequestsException;
+import service.serviceexceptions.UnauthorizedException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpeningBookServiceTests {
+  MemoryDataAccess dao = null;
+  Path file = null;
+  AuthData auth = new AuthData(UUID.randomUUID().toString(), "username");
+  ChessMove kingsPawn = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+
+  @BeforeEach
+  void setup() throws Exception {
+    dao = new MemoryDataAccess();
+    dao.createAuth(auth);
+    file = Files.createTempDirectory("book").resolve("opening-book.bin");
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    Files.deleteIfExists(file);
+    Files.deleteIfExists(file.getParent());
+  }
+
+  @Test
+  void testRebuild() throws Exception {
+    OpeningBookService service = new OpeningBookService(dao, file, 8, Set.of("username"), 0);
+    assertNull(service.lookup(new ChessGame()));
+
+    GameData game = dao.createGame(new GameData(0, "white", "black", "chess", new ChessGame()));
+    ChessGame played = new ChessGame();
+    played.makeMove(kingsPawn);
+    dao.appendMove(game.gameID(), kingsPawn, played);
+
+    assertEquals(1, service.rebuild(auth.authToken()));
+    assertEquals(kingsPawn, service.lookup(new ChessGame()));
+    assertNull(service.lookup(played));
+  }
+
+  @Test
+  void testReload() throws Exception {
+    GameData game = dao.createGame(new GameData(0, "white", "black", "chess", new ChessGame()));
+    dao.appendMove(game.gameID(), kingsPawn, new ChessGame());
+    new OpeningBookService(dao, file, 8, Set.of("username"), 0).rebuild(auth.authToken());
+
+    OpeningBookService service = new OpeningBookService(dao, file, 8, Set.of("username"), 0);
+    assertEquals(kingsPawn, service.lookup(new ChessGame()));
+    Files.delete(file);
+    assertEquals(kingsPawn, service.lookup(new ChessGame()));
+    assertEquals(0, service.reload(auth.authToken()));
+    assertNull(service.lookup(new ChessGame()));
+  }
+
+  @Test
+  void testUnauthorized() throws DataAccessException {
+    OpeningBookService service = new OpeningBookService(dao, file, 8, Set.of("username"), 0);
+    assertThrows(UnauthorizedException.class, () -> service.rebuild("bad token"));
+    assertThrows(UnauthorizedException.class, () -> service.reload("bad token"));
+
+    AuthData player = new AuthData(UUID.randomUUID().toString(), "player");
+    dao.createAuth(player);
+    assertThrows(UnauthorizedException.class, () -> service.rebuild(player.authToken()));
+    assertThrows(UnauthorizedException.class, () -> service.reload(player.authToken()));
+  }
+
+  @Test
+  void testRebuildRateLimited() throws Exception {
+    OpeningBookService service = new OpeningBookService(dao, file, 8, Set.of("username"), 60_000);
+    assertEquals(0, service.rebuild(auth.authToken()));
+    assertThrows(TooManyRequestsException.class, () -> service.rebuild(auth.authToken()));
+    assertEquals(0, service.reload(auth.authToken()));
+  }
+}
@@ -0,0 +1,140 @@
+package chess;
+
+/**
+ * Bit masks and attack tables shared by move generation and attack
+ * detection. Squares are numbered as in {@link ChessBoard}: bit 0 is row 1,
+ * column 1 and bit 63 is row 8, column 8.
+ * <p>
+ * Knight, king and pawn attacks from a single square are looked up in 64-entry
+ * tables filled once from the set-wise shifts, so the hot paths never shift,
+ * mask or allocate.
+ */
+final class Bitboards {
+
+    static final long FILE_A = 0x0101010101010101L;
+    static final long FILE_B = FILE_A << 1;
+    static final long FILE_G = FILE_A << 6;
+    static final long FILE_H = FILE_A << 7;
+    static final long RANK_1 = 0xFFL;
+    static final long RANK_3 = RANK_1 << 16;
+    static final long RANK_6 = RANK_1 << 40;
+    static final long RANK_8 = RANK_1 << 56;
+
+    private static final long NOT_A = ~FILE_A;
+    private static final long NOT_AB = ~(FILE_A | FILE_B);
+    private static final long NOT_H = ~FILE_H;
+    private static final long NOT_GH = ~(FILE_G | FILE_H);
+
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+    private static final long[][] PAWN = new long[2][64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            long bit = 1L << square;
+            KNIGHT[square] = knightAttacks(bit);
+            KING[square] = kingAttacks(bit);
+            PAWN[ChessGame.TeamColor.WHITE.ordinal()][square] = pawnAttacks(bit, ChessGame.TeamColor.WHITE);
+            PAWN[ChessGame.TeamColor.BLACK.ordinal()][square] = pawnAttacks(bit, ChessGame.TeamColor.BLACK);
+        }
+
+        int[][] directions = {{1, 0}, {0, 1}, {1, 1}, {1, -1}, {-1, 0}, {0, -1}, {-1, -1}, {-1, 1}};
+        for (int from = 0; from < 64; from++) {
+            for (int[] direction : directions) {
+                long ray = 0L;
+                int row = from / 8 + direction[0];
+                int col = from % 8 + direction[1];
+                while (row >= 0 && row < 8 && col >= 0 && col < 8) {
+                    int to = row * 8 + col;
+                    BETWEEN[from][to] = ray;
+                    ray |= 1L << to;
+                    row += direction[0];
+                    col += direction[1];
+                }
+                long backward = 0L;
+                row = from / 8 - direction[0];
+                col = from % 8 - direction[1];
+                while (row >= 0 && row < 8 && col >= 0 && col < 8) {
+                    backward |= 1L << (row * 8 + col);
+                    row -= direction[0];
+                    col -= direction[1];
+                }
+                long line = ray | backward | (1L << from);
+                for (long targets = ray; targets != 0; targets &= targets - 1) {
+                    LINE[from][Long.numberOfTrailingZeros(targets)] = line;
+                }
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    /**
+     * @return the squares strictly between two squares on a shared rank, file or
+     * diagonal, or 0 if they are not aligned
+     */
+    static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    /**
+     * @return the whole rank, file or diagonal through both squares, edge to edge,
+     * or 0 if they are not aligned
+     */
+    static long line(int first, int second) {
+        return LINE[first][second];
+    }
+
+    /**
+     * @return every square a knight on {@code square} attacks
+     */
+    static long knightAttacksFrom(int square) {
+        return KNIGHT[square];
+    }
+
+    /**
+     * @return every square a king on {@code square} attacks
+     */
+    static long kingAttacksFrom(int square) {
+        return KING[square];
+    }
+
+    /**
+     * @return every square a pawn of {@code color} on {@code square} attacks
+     */
+    static long pawnAttacksFrom(int square, ChessGame.TeamColor color) {
+        return PAWN[color.ordinal()][square];
+    }
+
+    /**
+     * @return every square a knight on any of {@code knights} attacks
+     */
+    private static long knightAttacks(long knights) {
+        return ((knights << 17) & NOT_A) | ((knights << 15) & NOT_H)
+                | ((knights << 10) & NOT_AB) | ((knights << 6) & NOT_GH)
+                | ((knights >>> 17) & NOT_H) | ((knights >>> 15) & NOT_A)
+                | ((knights >>> 10) & NOT_GH) | ((knights >>> 6) & NOT_AB);
+    }
+
+    /**
+     * @return every square a king on any of {@code kings} attacks
+     */
+    private static long kingAttacks(long kings) {
+        long sideways = ((kings << 1) & NOT_A) | ((kings >>> 1) & NOT_H);
+        long row = kings | sideways;
+        return sideways | (row << 8) | (row >>> 8);
+    }
+
+    /**
+     * @return every square a pawn of {@code color} on any of {@code pawns} attacks
+     */
+    private static long pawnAttacks(long pawns, ChessGame.TeamColor color) {
+        if (color == ChessGame.TeamColor.WHITE) {
+            return ((pawns << 9) & NOT_A) | ((pawns << 7) & NOT_H);
+        }
+        return ((pawns >>> 7) & NOT_A) | ((pawns >>> 9) & NOT_H);
+    }
+}
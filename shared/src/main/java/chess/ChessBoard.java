@@ -1,19 +1,89 @@
 package chess;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.Arrays;
 
 /**
  * A chessboard that can hold and rearrange chess pieces.
  * <p>
+ * The board is stored as bitboards: one {@code long} per piece type and color,
+ * one occupancy mask per color and one for the whole board. Bit {@code n} is the
+ * square at row {@code n / 8 + 1}, column {@code n % 8 + 1}. A small mailbox
+ * mirrors the bitboards so {@link #getPiece} is a single array read, and each
+ * color's king square is cached as kings are placed and moved, so check
+ * detection starts from the king without searching for it.
+ * <p>
+ * The board also carries the rule state that the pieces alone do not show, packed
+ * into one {@code int}: bits 0-3 are the castling rights ({@link #WHITE_KINGSIDE}
+ * and friends) and bits 4-9 the en passant target square, or 0 when there is none.
+ * {@link #makeMove} updates it with a mask per square, so no move ever rescans
+ * the board for it. Adding pieces by hand grants each castling right whose king
+ * and rook stand on their starting squares and clears the en passant square.
+ * <p>
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessBoardAdapter.class)
 public class ChessBoard {
 
-    private ChessPiece [][] squares = new ChessPiece [8][8];
+    static final int NO_PIECE = -1;
+    static final int NO_SQUARE = -1;
+    private static final int KING = ChessPiece.PieceType.KING.ordinal();
+
+    static final int WHITE_KINGSIDE = 1;
+    static final int WHITE_QUEENSIDE = 1 << 1;
+    static final int BLACK_KINGSIDE = 1 << 2;
+    static final int BLACK_QUEENSIDE = 1 << 3;
+    static final int ALL_CASTLING = 0xF;
+
+    /**
+     * Size in bits of the rule state, which {@link #makeMove} packs into its undo record
+     */
+    static final int RULE_BITS = 10;
+    private static final int EN_PASSANT_SHIFT = 4;
+
+    /**
+     * The castling rights that survive a move touching each square: moving from or
+     * capturing on a king or rook's starting square ends the rights that need it
+     */
+    private static final int[] CASTLING_KEPT = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_KEPT, ALL_CASTLING);
+        CASTLING_KEPT[0] = ALL_CASTLING & ~WHITE_QUEENSIDE;
+        CASTLING_KEPT[4] = ALL_CASTLING & ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_KEPT[7] = ALL_CASTLING & ~WHITE_KINGSIDE;
+        CASTLING_KEPT[56] = ALL_CASTLING & ~BLACK_QUEENSIDE;
+        CASTLING_KEPT[60] = ALL_CASTLING & ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_KEPT[63] = ALL_CASTLING & ~BLACK_KINGSIDE;
+    }
+
+    private final long[] pieceBitboards = new long[12];
+    private final long[] colorBitboards = new long[2];
+    private long occupied;
+    private final byte[] mailbox = new byte[64];
+    private long modCount;
+    private long zobristKey;
+    private int rules;
+    private final int[] kingSquares = {NO_SQUARE, NO_SQUARE};
 
     public ChessBoard() {
-        
+        Arrays.fill(mailbox, (byte) NO_PIECE);
+    }
+
+    /**
+     * Copies another board's pieces
+     */
+    ChessBoard(ChessBoard other) {
+        System.arraycopy(other.pieceBitboards, 0, pieceBitboards, 0, pieceBitboards.length);
+        System.arraycopy(other.colorBitboards, 0, colorBitboards, 0, colorBitboards.length);
+        System.arraycopy(other.mailbox, 0, mailbox, 0, mailbox.length);
+        occupied = other.occupied;
+        zobristKey = other.zobristKey;
+        rules = other.rules;
+        kingSquares[0] = other.kingSquares[0];
+        kingSquares[1] = other.kingSquares[1];
     }
 
     /**
@@ -23,19 +93,34 @@ public class ChessBoard {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
-        squares[position.getRow()-1][position.getColumn()-1] = piece;
+        int square = square(position.getRow(), position.getColumn());
+        modCount++;
+        clearSquare(square);
+        if (piece != null) {
+            setSquare(square, pieceIndex(piece.getTeamColor(), piece.getPieceType()));
+        }
+        rules = placementCastlingRights();
     }
 
     @Override
     public boolean equals(Object o) {
         if (this == o) {return true;}
         if (!(o instanceof ChessBoard that)) {return false;}
-        return Arrays.deepEquals(squares, that.squares);
+        return zobristKey == that.zobristKey && Arrays.equals(pieceBitboards, that.pieceBitboards);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(squares);
+        return (int) (zobristKey ^ (zobristKey >>> 32));
+    }
+
+    /**
+     * @return a 64-bit Zobrist hash of the pieces on the board, kept up to date as
+     * pieces are added, moved and removed. The rule state is hashed separately, by
+     * {@link #ruleKey()}, so boards with the same pieces have the same key.
+     */
+    public long getZobristKey() {
+        return zobristKey;
     }
 
     /**
@@ -46,7 +131,8 @@ public class ChessBoard {
      * position
      */
     public ChessPiece getPiece(ChessPosition position) {
-        return squares[position.getRow()-1][position.getColumn()-1];
+        int index = mailbox[square(position.getRow(), position.getColumn())];
+        return index == NO_PIECE ? null : ChessPiece.ofIndex(index);
     }
 
     /**
@@ -54,49 +140,312 @@ public class ChessBoard {
      * (How the game of chess normally starts)
      */
     public void resetBoard() {
-        squares = new ChessPiece[8][8];
-
-        addPiece(new ChessPosition(1,1), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
-        addPiece(new ChessPosition(1,2), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(1,3), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(1,4), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN));
-        addPiece(new ChessPosition(1,5), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
-        addPiece(new ChessPosition(1,6), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(1,7), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(1,8), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
-
-        addPiece(new ChessPosition(2,1), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
-        addPiece(new ChessPosition(2,2), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
-        addPiece(new ChessPosition(2,3), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
-        addPiece(new ChessPosition(2,4), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
-        addPiece(new ChessPosition(2,5), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
-        addPiece(new ChessPosition(2,6), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
-        addPiece(new ChessPosition(2,7), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
-        addPiece(new ChessPosition(2,8), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
-
-        addPiece(new ChessPosition(8,1), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
-        addPiece(new ChessPosition(8,2), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(8,3), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(8,4), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN));
-        addPiece(new ChessPosition(8,5), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
-        addPiece(new ChessPosition(8,6), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(8,7), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(8,8), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
-
-        addPiece(new ChessPosition(7,1), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
-        addPiece(new ChessPosition(7,2), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
-        addPiece(new ChessPosition(7,3), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
-        addPiece(new ChessPosition(7,4), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
-        addPiece(new ChessPosition(7,5), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
-        addPiece(new ChessPosition(7,6), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
-        addPiece(new ChessPosition(7,7), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
-        addPiece(new ChessPosition(7,8), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+        modCount++;
+        Arrays.fill(pieceBitboards, 0L);
+        Arrays.fill(colorBitboards, 0L);
+        occupied = 0L;
+        zobristKey = 0L;
+        rules = ALL_CASTLING;
+        Arrays.fill(kingSquares, NO_SQUARE);
+        Arrays.fill(mailbox, (byte) NO_PIECE);
+
+        ChessPiece.PieceType[] backRank = {
+                ChessPiece.PieceType.ROOK, ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.BISHOP,
+                ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.KING, ChessPiece.PieceType.BISHOP,
+                ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.ROOK
+        };
+        for (int col = 1; col <= 8; col++) {
+            setSquare(square(1, col), pieceIndex(ChessGame.TeamColor.WHITE, backRank[col - 1]));
+            setSquare(square(2, col), pieceIndex(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+            setSquare(square(7, col), pieceIndex(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+            setSquare(square(8, col), pieceIndex(ChessGame.TeamColor.BLACK, backRank[col - 1]));
+        }
+    }
+
+    /**
+     * @return the castling rights still held, a mix of {@link #WHITE_KINGSIDE},
+     * {@link #WHITE_QUEENSIDE}, {@link #BLACK_KINGSIDE} and {@link #BLACK_QUEENSIDE}
+     */
+    int castlingRights() {
+        return rules & ALL_CASTLING;
+    }
+
+    void setCastlingRights(int rights) {
+        modCount++;
+        rules = (rules & ~ALL_CASTLING) | (rights & ALL_CASTLING);
+    }
+
+    /**
+     * @return the square a pawn skipped over with a double step on the last move,
+     * if an enemy pawn stands ready to take it en passant, or 0 otherwise
+     */
+    int enPassantSquare() {
+        return rules >>> EN_PASSANT_SHIFT;
+    }
+
+    /**
+     * @param square a square on row 3 or 6, or 0 for none
+     */
+    void setEnPassantSquare(int square) {
+        modCount++;
+        rules = castlingRights() | (square << EN_PASSANT_SHIFT);
+    }
+
+    /**
+     * @return the Zobrist key of the castling rights and en passant square
+     */
+    long ruleKey() {
+        return Zobrist.rules(rules);
+    }
+
+    /**
+     * @return the castling rights whose king and rook are on their starting squares
+     */
+    private int placementCastlingRights() {
+        int rights = 0;
+        if (mailbox[4] == pieceIndex(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING)) {
+            int rook = pieceIndex(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK);
+            rights |= (mailbox[7] == rook ? WHITE_KINGSIDE : 0) | (mailbox[0] == rook ? WHITE_QUEENSIDE : 0);
+        }
+        if (mailbox[60] == pieceIndex(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING)) {
+            int rook = pieceIndex(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK);
+            rights |= (mailbox[63] == rook ? BLACK_KINGSIDE : 0) | (mailbox[56] == rook ? BLACK_QUEENSIDE : 0);
+        }
+        return rights;
+    }
+
+    /**
+     * @return bitboard of every piece of the given color and type
+     */
+    long pieces(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return pieceBitboards[pieceIndex(color, type)];
+    }
+
+    /**
+     * @return bitboard of every piece in a bitboard slot
+     */
+    long pieces(int pieceIndex) {
+        return pieceBitboards[pieceIndex];
+    }
+
+    /**
+     * @return bitboard of every piece of the given color
+     */
+    long pieces(ChessGame.TeamColor color) {
+        return colorBitboards[color.ordinal()];
+    }
+
+    /**
+     * @return bitboard of every occupied square
+     */
+    long occupied() {
+        return occupied;
+    }
+
+    /**
+     * @return the square of a color's king, or {@link #NO_SQUARE} if it has no king
+     * or more than one
+     */
+    int kingSquare(ChessGame.TeamColor color) {
+        return kingSquares[color.ordinal()];
+    }
+
+    /**
+     * @return a counter that changes every time a piece is added, moved or removed
+     */
+    long modCount() {
+        return modCount;
+    }
+
+    /**
+     * @return the piece index on a square, or {@link #NO_PIECE} if it is empty
+     */
+    int pieceIndexAt(int square) {
+        return mailbox[square];
+    }
+
+    /**
+     * Determines if any piece of {@code attacker} attacks a square. Works outward
+     * from the square: a knight, king or pawn pattern centered on it, and rook and
+     * bishop rays that only matter when the attacker has a matching slider.
+     *
+     * @param square   the bit index of the square to test
+     * @param attacker the team that may be attacking it
+     * @return True if the square is attacked
+     */
+    boolean isSquareAttacked(int square, ChessGame.TeamColor attacker) {
+        if ((Bitboards.knightAttacksFrom(square) & pieces(attacker, ChessPiece.PieceType.KNIGHT)) != 0
+                || (Bitboards.kingAttacksFrom(square) & pieces(attacker, ChessPiece.PieceType.KING)) != 0
+                || (Bitboards.pawnAttacksFrom(square, attacker.opponent()) & pieces(attacker, ChessPiece.PieceType.PAWN)) != 0) {
+            return true;
+        }
+        long queens = pieces(attacker, ChessPiece.PieceType.QUEEN);
+        long rooks = queens | pieces(attacker, ChessPiece.PieceType.ROOK);
+        if (rooks != 0 && (SlidingAttacks.rook(square, occupied) & rooks) != 0) {
+            return true;
+        }
+        long bishops = queens | pieces(attacker, ChessPiece.PieceType.BISHOP);
+        return bishops != 0 && (SlidingAttacks.bishop(square, occupied) & bishops) != 0;
+    }
+
+    /**
+     * @return every piece of {@code attacker} that attacks a square, with sliding
+     * attacks computed against the given occupancy rather than the board's own
+     */
+    long attackersTo(int square, ChessGame.TeamColor attacker, long occupancy) {
+        long queens = pieces(attacker, ChessPiece.PieceType.QUEEN);
+        long rooks = queens | pieces(attacker, ChessPiece.PieceType.ROOK);
+        long bishops = queens | pieces(attacker, ChessPiece.PieceType.BISHOP);
+        return (Bitboards.knightAttacksFrom(square) & pieces(attacker, ChessPiece.PieceType.KNIGHT))
+                | (Bitboards.kingAttacksFrom(square) & pieces(attacker, ChessPiece.PieceType.KING))
+                | (Bitboards.pawnAttacksFrom(square, attacker.opponent()) & pieces(attacker, ChessPiece.PieceType.PAWN))
+                | (SlidingAttacks.rook(square, occupancy) & rooks)
+                | (SlidingAttacks.bishop(square, occupancy) & bishops);
+    }
+
+    /**
+     * Moves a piece without checking legality, capturing whatever is on the end
+     * square and promoting if the move says so. A king moving two squares castles,
+     * taking its rook along, and a pawn moving diagonally onto an empty square
+     * captures en passant.
+     *
+     * @param move a {@link PackedMove}
+     * @return an undo record to hand back to {@link #unmakeMove}: the captured
+     * piece + 1 in bits 0-3, the moving piece in bits 4-7 and the previous rule
+     * state in the {@link #RULE_BITS} above them
+     */
+    int makeMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int moving = mailbox[from];
+        int captured = mailbox[to];
+        int promotion = PackedMove.promotion(move);
+        int undo = (captured + 1) | (moving << 4) | (rules << 8);
+        int type = moving % 6;
+        modCount++;
+        clearSquare(to);
+        clearSquare(from);
+        setSquare(to, promotion < 0 ? moving : (moving / 6) * 6 + promotion);
+
+        int enPassant = 0;
+        if (type == ChessPiece.PieceType.PAWN.ordinal()) {
+            if (captured == NO_PIECE && ((from ^ to) & 7) != 0) {
+                clearSquare((from & 56) | (to & 7));
+            } else if (Math.abs(to - from) == 16) {
+                enPassant = enPassantTarget(from, to, moving);
+            }
+        } else if (type == ChessPiece.PieceType.KING.ordinal() && Math.abs(to - from) == 2) {
+            int rookFrom = to > from ? from + 3 : from - 4;
+            int rook = mailbox[rookFrom];
+            clearSquare(rookFrom);
+            setSquare((from + to) >>> 1, rook);
+        }
+        rules = (rules & CASTLING_KEPT[from] & CASTLING_KEPT[to]) | (enPassant << EN_PASSANT_SHIFT);
+        return undo;
+    }
+
+    /**
+     * @return the square a double step skipped, if an enemy pawn could take there
+     * en passant, or 0
+     */
+    private int enPassantTarget(int from, int to, int pawn) {
+        int target = (from + to) >>> 1;
+        ChessGame.TeamColor mover = ChessGame.TeamColor.values()[pawn / 6];
+        long takers = Bitboards.pawnAttacksFrom(target, mover) & pieces(mover.opponent(), ChessPiece.PieceType.PAWN);
+        return takers != 0 ? target : 0;
+    }
+
+    /**
+     * Reverts a move made with {@link #makeMove}.
+     *
+     * @param move the move that was made
+     * @param undo the record {@link #makeMove} returned for it
+     */
+    void unmakeMove(int move, int undo) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int captured = (undo & 0xF) - 1;
+        int moving = (undo >>> 4) & 0xF;
+        int type = moving % 6;
+        modCount++;
+        clearSquare(to);
+        setSquare(from, moving);
+        if (captured != NO_PIECE) {
+            setSquare(to, captured);
+        } else if (type == ChessPiece.PieceType.PAWN.ordinal() && ((from ^ to) & 7) != 0) {
+            int enemyPawn = (1 - moving / 6) * 6 + ChessPiece.PieceType.PAWN.ordinal();
+            setSquare((from & 56) | (to & 7), enemyPawn);
+        } else if (type == ChessPiece.PieceType.KING.ordinal() && Math.abs(to - from) == 2) {
+            int rookTo = (from + to) >>> 1;
+            int rook = mailbox[rookTo];
+            clearSquare(rookTo);
+            setSquare(to > from ? from + 3 : from - 4, rook);
+        }
+        rules = undo >>> 8;
+    }
+
+    private void setSquare(int square, int index) {
+        long bit = 1L << square;
+        pieceBitboards[index] |= bit;
+        colorBitboards[index / 6] |= bit;
+        occupied |= bit;
+        mailbox[square] = (byte) index;
+        zobristKey ^= Zobrist.piece(index, square);
+        if (index % 6 == KING) {
+            updateKingSquare(index / 6);
+        }
+    }
+
+    private void clearSquare(int square) {
+        int index = mailbox[square];
+        if (index == NO_PIECE) {
+            return;
+        }
+        long bit = 1L << square;
+        pieceBitboards[index] &= ~bit;
+        colorBitboards[index / 6] &= ~bit;
+        occupied &= ~bit;
+        mailbox[square] = (byte) NO_PIECE;
+        zobristKey ^= Zobrist.piece(index, square);
+        if (index % 6 == KING) {
+            updateKingSquare(index / 6);
+        }
+    }
+
+    private void updateKingSquare(int color) {
+        long kings = pieceBitboards[color * 6 + KING];
+        kingSquares[color] = Long.bitCount(kings) == 1 ? Long.numberOfTrailingZeros(kings) : NO_SQUARE;
+    }
+
+    /**
+     * @return the bit index of a 1-based row and column
+     */
+    static int square(int row, int col) {
+        return (row - 1) * 8 + (col - 1);
+    }
+
+    /**
+     * @return the bitboard slot for a piece of the given color and type
+     */
+    static int pieceIndex(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return color.ordinal() * 6 + type.ordinal();
+    }
+
+    static ChessPiece pieceForIndex(int index) {
+        return ChessPiece.ofIndex(index);
     }
 
     @Override
     public String toString() {
-        return "ChessBoard{" +
-                "squares=" + Arrays.toString(squares) +
-                '}';
+        StringBuilder sb = new StringBuilder("ChessBoard{\n");
+        for (int row = 8; row >= 1; row--) {
+            sb.append('|');
+            for (int col = 1; col <= 8; col++) {
+                int index = mailbox[square(row, col)];
+                sb.append(index == NO_PIECE ? ' ' : ChessPiece.ofIndex(index).toChar()).append('|');
+            }
+            sb.append('\n');
+        }
+        return sb.append('}').toString();
     }
 }
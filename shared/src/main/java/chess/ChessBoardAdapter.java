@@ -0,0 +1,96 @@
+package chess;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Serializes a {@link ChessBoard} in the original {@code squares} layout, an 8x8
+ * array of pieces or nulls, so stored games and clients keep working on top of
+ * the bitboard representation. The castling rights, and the en passant square if
+ * there is one, follow as {@code castling} and {@code enPassant} numbers in the
+ * board's own packing. Boards stored without them get the rights their placement
+ * allows.
+ */
+class ChessBoardAdapter extends TypeAdapter<ChessBoard> {
+
+    private final ChessPieceAdapter pieces = new ChessPieceAdapter();
+
+    @Override
+    public void write(JsonWriter out, ChessBoard board) throws IOException {
+        if (board == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("squares");
+        out.beginArray();
+        for (int row = 1; row <= 8; row++) {
+            out.beginArray();
+            for (int col = 1; col <= 8; col++) {
+                int index = board.pieceIndexAt(ChessBoard.square(row, col));
+                if (index == ChessBoard.NO_PIECE) {
+                    out.nullValue();
+                } else {
+                    pieces.write(out, ChessBoard.pieceForIndex(index));
+                }
+            }
+            out.endArray();
+        }
+        out.endArray();
+        out.name("castling").value(board.castlingRights());
+        if (board.enPassantSquare() != 0) {
+            out.name("enPassant").value(board.enPassantSquare());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public ChessBoard read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ChessBoard board = new ChessBoard();
+        int castling = -1;
+        int enPassant = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (name.equals("castling")) {
+                castling = in.nextInt();
+                continue;
+            }
+            if (name.equals("enPassant")) {
+                enPassant = in.nextInt();
+                continue;
+            }
+            if (!name.equals("squares")) {
+                in.skipValue();
+                continue;
+            }
+            in.beginArray();
+            for (int row = 1; in.hasNext(); row++) {
+                in.beginArray();
+                for (int col = 1; in.hasNext(); col++) {
+                    ChessPiece piece = pieces.read(in);
+                    if (piece != null) {
+                        board.addPiece(ChessPosition.of(row, col), piece);
+                    }
+                }
+                in.endArray();
+            }
+            in.endArray();
+        }
+        in.endObject();
+        // rights already granted by the placement are the most a board can have
+        board.setCastlingRights(castling < 0 ? board.castlingRights() : castling & board.castlingRights());
+        if (enPassant > 0 && enPassant < 64 && ((1L << enPassant) & (Bitboards.RANK_3 | Bitboards.RANK_6)) != 0) {
+            board.setEnPassantSquare(enPassant);
+        }
+        return board;
+    }
+}
@@ -1,8 +1,12 @@
 package chess;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * For a class that can manage a chess game, making moves on a board
@@ -16,24 +20,81 @@ public class ChessGame {
         if (this == o) {return true;}
         if (o == null || getClass() != o.getClass()) {return false;}
         ChessGame chessGame=(ChessGame) o;
-        return Objects.equals(board, chessGame.board) && currentTurn == chessGame.currentTurn;
+        return getPositionKey() == chessGame.getPositionKey()
+                && Objects.equals(board, chessGame.board) && currentTurn == chessGame.currentTurn;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(board, currentTurn);
+        long key = getPositionKey();
+        return (int) (key ^ (key >>> 32));
     }
 
-    private ChessBoard board = new ChessBoard();
+    private ChessBoard board;
     private TeamColor currentTurn;
     private boolean gameOver;
+    private int halfmoveClock;
+    private int plyCount;
+    private transient PositionHistory history = new PositionHistory();
+    private transient long[] undoStack = new long[32];
+    private transient int undoCount;
+    private final transient GameStatus[] statusCache = new GameStatus[2];
+    private transient ChessBoard statusBoard;
+    private transient long statusModCount;
+
+    private static final int UNDO_SHIFT = 16;
+    private static final int UNDO_BITS = 8 + ChessBoard.RULE_BITS;
+    private static final int CLOCK_SHIFT = UNDO_SHIFT + UNDO_BITS;
 
     public ChessGame() {
+        board = new ChessBoard();
         board.resetBoard();
         currentTurn = TeamColor.WHITE;
         gameOver = false;
     }
 
+    /**
+     * Starts a game from a board that is already set up, without building and
+     * discarding a starting position first
+     *
+     * @param board       the board to play on, used as is
+     * @param currentTurn the team to move
+     */
+    ChessGame(ChessBoard board, TeamColor currentTurn) {
+        this.board = board;
+        this.currentTurn = currentTurn;
+    }
+
+    /**
+     * @return an independent copy of this game, including the positions it passed
+     * through and its undo records, so the copy still spots repetitions of
+     * positions played before it was made
+     */
+    public ChessGame copy() {
+        ChessGame copy = new ChessGame(new ChessBoard(board), currentTurn);
+        copy.gameOver = gameOver;
+        copy.halfmoveClock = halfmoveClock;
+        copy.plyCount = plyCount;
+        copy.history = history.copy();
+        copy.undoStack = Arrays.copyOf(undoStack, undoStack.length);
+        copy.undoCount = undoCount;
+        return copy;
+    }
+
+    /**
+     * @return a 64-bit Zobrist hash of the position: the board's pieces, castling
+     * rights and en passant square, and the team to move. Equal positions always
+     * have equal keys.
+     */
+    public long getPositionKey() {
+        return positionKey(currentTurn);
+    }
+
+    private long positionKey(TeamColor toMove) {
+        long key = board == null ? 0L : board.getZobristKey() ^ board.ruleKey();
+        return toMove == TeamColor.BLACK ? key ^ Zobrist.BLACK_TO_MOVE : key;
+    }
+
     /**
      * @return Which team's turn it is
      */
@@ -56,12 +117,69 @@ public class ChessGame {
         this.gameOver = gameOver;
     }
 
+    /**
+     * @return how many plies have been played since the last capture or pawn move
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    /**
+     * @return how many plies have been played since the start of the game
+     */
+    public int getPlyCount() {
+        return plyCount;
+    }
+
+    public void setPlyCount(int plyCount) {
+        this.plyCount = plyCount;
+    }
+
+    /**
+     * @return how many times the current position, with the same team to move,
+     * has occurred since the board was set, counting this time
+     */
+    public int getRepetitionCount() {
+        return history.count(getPositionKey()) + 1;
+    }
+
     /**
      * Enum identifying the 2 possible teams in a chess game
      */
     public enum TeamColor {
         WHITE,
-        BLACK
+        BLACK;
+
+        /**
+         * @return the team playing against this one
+         */
+        public TeamColor opponent() {
+            return this == WHITE ? BLACK : WHITE;
+        }
+    }
+
+    /**
+     * The state of one team's position: free to move, in check, out of moves, or
+     * drawn by repetition or the fifty-move rule
+     */
+    public enum GameStatus {
+        NORMAL,
+        CHECK,
+        CHECKMATE,
+        STALEMATE,
+        THREEFOLD_REPETITION,
+        FIFTY_MOVE_RULE;
+
+        /**
+         * @return True if the game cannot go on from this status
+         */
+        public boolean isGameOver() {
+            return this != NORMAL && this != CHECK;
+        }
     }
 
     /**
@@ -72,23 +190,112 @@ public class ChessGame {
      * startPosition
      */
     public Collection<ChessMove> validMoves(ChessPosition startPosition) {
-        if (board.getPiece(startPosition) != null) {
-            ChessPiece startPiece = board.getPiece(startPosition);
-            Collection<ChessMove> allMoves = startPiece.pieceMoves(board, startPosition);
-            Collection<ChessMove> moveList = new ArrayList<>();
-            for (ChessMove move: allMoves) {
-                ChessPiece capturedPiece = board.getPiece(move.getEndPosition());
-                board.addPiece(move.getEndPosition(), startPiece);
-                board.addPiece(move.getStartPosition(), null);
-                if (!isInCheck(startPiece.getTeamColor())) {
-                    moveList.add(move);
+        ChessPiece piece = board.getPiece(startPosition);
+        if (piece == null) {
+            return null;
+        }
+        int from = ChessBoard.square(startPosition.getRow(), startPosition.getColumn());
+        MoveCache.Entry position = cachedPosition(piece.getTeamColor());
+        Collection<ChessMove> moveList = new ArrayList<>();
+        for (int i = 0; i < position.size(); i++) {
+            int move = position.get(i);
+            if (PackedMove.from(move) == from) {
+                moveList.add(PackedMove.toChessMove(move));
+            }
+        }
+        return moveList;
+    }
+
+    /**
+     * Fills {@code moves} with every legal move for the team whose turn it is,
+     * without allocating
+     *
+     * @param moves the list to overwrite with {@link PackedMove}s
+     */
+    public void legalMoves(MoveList moves) {
+        MoveGenerator.generateLegal(board, currentTurn, -1L, moves);
+    }
+
+    /**
+     * Fills {@code moves} with the legal moves of the piece at a position, for
+     * whichever team it belongs to, without allocating
+     *
+     * @param startPosition the piece to get moves for
+     * @param moves         the list to overwrite with {@link PackedMove}s; left
+     *                      empty if there is no piece at startPosition
+     */
+    public void legalMoves(ChessPosition startPosition, MoveList moves) {
+        int from = ChessBoard.square(startPosition.getRow(), startPosition.getColumn());
+        int index = board.pieceIndexAt(from);
+        if (index == ChessBoard.NO_PIECE) {
+            moves.clear();
+            return;
+        }
+        MoveGenerator.generateLegal(board, ChessBoard.pieceForIndex(index).getTeamColor(), 1L << from, moves);
+    }
+
+    /**
+     * Hands the legal moves of the team whose turn it is to a visitor, one piece's
+     * moves at a time, stopping as soon as the visitor returns false. Pieces after
+     * that are never generated, and nothing is allocated.
+     *
+     * @return True if every move was visited, false if the visitor stopped early
+     */
+    public boolean visitLegalMoves(MoveVisitor visitor) {
+        return visitLegalMoves(currentTurn, visitor);
+    }
+
+    private boolean visitLegalMoves(TeamColor teamColor, MoveVisitor visitor) {
+        try (MoveList moves = MoveList.borrow()) {
+            for (long pieces = board.pieces(teamColor); pieces != 0; pieces &= pieces - 1) {
+                MoveGenerator.generateLegal(board, teamColor, pieces & -pieces, moves);
+                for (int i = 0; i < moves.size(); i++) {
+                    if (!visitor.visit(moves.get(i))) {
+                        return false;
+                    }
                 }
-                board.addPiece(move.getStartPosition(), startPiece);
-                board.addPiece(move.getEndPosition(), capturedPiece);
             }
-            return moveList;
         }
-        return null;
+        return true;
+    }
+
+    /**
+     * @return True if a team has at least one legal move. Answered from the move
+     * cache when the position is there, otherwise by generating until the first
+     * move turns up.
+     */
+    public boolean hasLegalMove(TeamColor teamColor) {
+        MoveCache.Entry position = MoveCache.shared().peek(positionKey(teamColor));
+        if (position != null) {
+            return position.size() > 0;
+        }
+        return !visitLegalMoves(teamColor, move -> false);
+    }
+
+    /**
+     * @return how many legal moves the team whose turn it is has
+     */
+    public int countLegalMoves() {
+        try (MoveList moves = MoveList.borrow()) {
+            legalMoves(moves);
+            return moves.size();
+        }
+    }
+
+    /**
+     * @return the legal moves of the team whose turn it is, generated lazily as
+     * the stream is consumed. The game must not change until the stream is done.
+     */
+    public Stream<ChessMove> legalMoveStream() {
+        return StreamSupport.stream(legalMoveSpliterator(), false);
+    }
+
+    /**
+     * @return a spliterator that generates the legal moves of the team whose turn
+     * it is one piece at a time, and fails fast if the board changes meanwhile
+     */
+    public Spliterator<ChessMove> legalMoveSpliterator() {
+        return new LegalMoveSpliterator(board, currentTurn);
     }
 
     /**
@@ -98,7 +305,9 @@ public class ChessGame {
      * @throws InvalidMoveException if move is invalid
      */
     public void makeMove(ChessMove move) throws InvalidMoveException {
-        ChessPiece capturedPiece = board.getPiece(move.getEndPosition());
+        if (!isOnBoard(move.getStartPosition()) || !isOnBoard(move.getEndPosition())) {
+            throw new InvalidMoveException("Move is off the board");
+        }
         ChessPiece piece = board.getPiece(move.getStartPosition());
         if (piece == null) {
             throw new InvalidMoveException("No Piece here");
@@ -106,61 +315,125 @@ public class ChessGame {
         if (piece.getTeamColor() != getTeamTurn()){
             throw new InvalidMoveException("Wrong Color");
         }
-        if (piece.pieceMoves(board, move.getStartPosition()).contains(move)){
-            if (move.getPromotionPiece() == null){
-                board.addPiece(move.getEndPosition(), piece);
-            }
-            else {
-                board.addPiece(move.getEndPosition(), new ChessPiece(piece.getTeamColor(), move.getPromotionPiece()));
-            }
-            board.addPiece(move.getStartPosition(), null);
-            if (isInCheck(piece.getTeamColor()) || isInCheckmate(piece.getTeamColor()) || isInStalemate(piece.getTeamColor())){
-                board.addPiece(move.getStartPosition(), piece);
-                board.addPiece(move.getEndPosition(), capturedPiece);
-                throw new InvalidMoveException("Dangerous Move");
-            }
-            setTeamTurn(getTeamTurn() == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE);
-        }
-        else {
-            throw new InvalidMoveException("No moves possible");
+        int packedMove = PackedMove.fromChessMove(move);
+        if (!isLegal(packedMove)) {
+            throw new InvalidMoveException("Illegal move");
         }
+        applyMove(packedMove);
+    }
 
+    /**
+     * Makes a move that was checked when it was first played, such as one read
+     * back from a game's move log, without generating moves to check it again
+     *
+     * @param move a {@link PackedMove}
+     * @throws InvalidMoveException if the move does not start on a piece of the
+     *                              team to move
+     */
+    public void replayMove(int move) throws InvalidMoveException {
+        int index = board.pieceIndexAt(PackedMove.from(move));
+        if (index == ChessBoard.NO_PIECE || ChessBoard.pieceForIndex(index).getTeamColor() != currentTurn) {
+            throw new InvalidMoveException("Logged move does not start on a piece of the team to move");
+        }
+        applyMove(move);
     }
 
     /**
-     * Determines if the given team is in check
+     * Takes back the most recent move made on this game, restoring the board, the
+     * turn and the move counters exactly as they were.
      *
-     * @param teamColor which team to check for check
-     * @return True if the specified team is in check
+     * @throws IllegalStateException if no move has been made since the board was set
      */
-    public boolean isInCheck(TeamColor teamColor) {
-        TeamColor advantageTeam = (teamColor == TeamColor.WHITE) ? TeamColor.BLACK : TeamColor.WHITE;
-
-        for (int i = 1; i <= 8; i++) {
-            for (int j = 1; j <= 8; j++) {
-                ChessPosition currentPosition = new ChessPosition(i, j);
-                ChessPiece currentPiece = board.getPiece(currentPosition);
-                if (isOpponentPiece(currentPiece, advantageTeam)) {
-                    if (isKingAttacked(currentPiece, currentPosition)) {
-                        return true;
-                    }
+    public void undoMove() {
+        if (undoCount == 0) {
+            throw new IllegalStateException("No move to undo");
+        }
+        long record = undoStack[--undoCount];
+        board.unmakeMove((int) record & 0xFFFF, (int) (record >>> UNDO_SHIFT) & ((1 << UNDO_BITS) - 1));
+        halfmoveClock = (int) (record >>> CLOCK_SHIFT);
+        plyCount--;
+        currentTurn = currentTurn.opponent();
+        history.pop();
+    }
+
+    /**
+     * Makes a {@link PackedMove} without validating it and pushes an undo record
+     * so {@link #undoMove} can reverse it. The record holds the move in its low 16
+     * bits, the board's undo record above it and the previous halfmove clock in
+     * the bits that are left.
+     */
+    void applyMove(int move) {
+        if (undoCount == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, undoCount * 2);
+        }
+        history.push(getPositionKey());
+        int undo = board.makeMove(move);
+        undoStack[undoCount++] = (long) halfmoveClock << CLOCK_SHIFT | (long) undo << UNDO_SHIFT | move;
+        boolean captured = (undo & 0xF) != 0;
+        boolean pawnMoved = ((undo >>> 4) & 0xF) % 6 == ChessPiece.PieceType.PAWN.ordinal();
+        halfmoveClock = captured || pawnMoved ? 0 : halfmoveClock + 1;
+        plyCount++;
+        currentTurn = currentTurn.opponent();
+    }
+
+    /**
+     * Checks a move against the moving piece's generated moves rather than the
+     * move cache, so a position whose key collides with a cached one can never
+     * let an illegal move through
+     */
+    private boolean isLegal(int move) {
+        try (MoveList moves = MoveList.borrow()) {
+            MoveGenerator.generateLegal(board, currentTurn, 1L << PackedMove.from(move), moves);
+            return moves.contains(move);
+        }
+    }
+
+    /**
+     * Looks up the legal moves and status of the board with a team to move in the
+     * {@link MoveCache#shared() shared cache}, generating and storing them on a miss.
+     */
+    private MoveCache.Entry cachedPosition(TeamColor teamColor) {
+        long key = positionKey(teamColor);
+        MoveCache cache = MoveCache.shared();
+        MoveCache.Entry position = cache.get(key);
+        if (position == null) {
+            try (MoveList moves = MoveList.borrow()) {
+                MoveGenerator.generateLegal(board, teamColor, -1L, moves);
+                boolean inCheck = isInCheck(teamColor);
+                GameStatus status;
+                if (moves.isEmpty()) {
+                    status = inCheck ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+                } else {
+                    status = inCheck ? GameStatus.CHECK : GameStatus.NORMAL;
                 }
+                position = cache.put(key, moves, status);
             }
         }
-        return false;
+        return position;
     }
 
-    private boolean isOpponentPiece(ChessPiece piece, TeamColor advantageTeam) {
-        return piece != null && piece.getTeamColor() == advantageTeam;
+    private static boolean isOnBoard(ChessPosition position) {
+        return position != null && position.getRow() >= 1 && position.getRow() <= 8
+                && position.getColumn() >= 1 && position.getColumn() <= 8;
     }
 
-    private boolean isKingAttacked(ChessPiece currentPiece, ChessPosition currentPosition) {
-        Collection<ChessMove> currentValidMoves = currentPiece.pieceMoves(board, currentPosition);
-        for (ChessMove currentMove : currentValidMoves) {
-            ChessPiece targetPiece = board.getPiece(currentMove.getEndPosition());
-            if (targetPiece != null && targetPiece.getPieceType() == ChessPiece.PieceType.KING) {
+    /**
+     * Determines if the given team is in check
+     *
+     * @param teamColor which team to check for check
+     * @return True if the specified team is in check
+     */
+    public boolean isInCheck(TeamColor teamColor) {
+        int king = board.kingSquare(teamColor);
+        if (king != ChessBoard.NO_SQUARE) {
+            return board.isSquareAttacked(king, teamColor.opponent());
+        }
+        long kings = board.pieces(teamColor, ChessPiece.PieceType.KING);
+        while (kings != 0) {
+            if (board.isSquareAttacked(Long.numberOfTrailingZeros(kings), teamColor.opponent())) {
                 return true;
             }
+            kings &= kings - 1;
         }
         return false;
     }
@@ -172,7 +445,7 @@ public class ChessGame {
      * @return True if the specified team is in checkmate
      */
     public boolean isInCheckmate(TeamColor teamColor) {
-        return (anyValidMoves(teamColor) && isInCheck(teamColor));
+        return getGameStatus(teamColor) == GameStatus.CHECKMATE;
     }
 
     /**
@@ -183,40 +456,77 @@ public class ChessGame {
      * @return True if the specified team is in stalemate, otherwise false
      */
     public boolean isInStalemate(TeamColor teamColor) {
-        return (anyValidMoves(teamColor) && !isInCheck(teamColor));
+        return getGameStatus(teamColor) == GameStatus.STALEMATE;
     }
+
+    /**
+     * @return True if a team with pieces on the board has no legal move, so the
+     * game is over by checkmate or stalemate
+     */
     public boolean anyValidMoves(TeamColor teamColor) {
-        boolean hasPieces = false;
-        for (int i = 1; i <= 8; i++) {
-            for (int j = 1; j <= 8; j++) {
-                ChessPosition currentPosition = new ChessPosition(i, j);
-                ChessPiece currentPiece = board.getPiece(currentPosition);
-                if (currentPiece != null && currentPiece.getTeamColor() == teamColor) {
-                    hasPieces = true;
-                    break;
-                }
+        return board.pieces(teamColor) != 0 && !hasLegalMove(teamColor);
+    }
+
+    /**
+     * @return the status of the team whose turn it is
+     */
+    public GameStatus getGameStatus() {
+        return getGameStatus(currentTurn);
+    }
+
+    /**
+     * Works out check, checkmate and stalemate for a team in one pass. The result
+     * is cached until the board changes, so asking again, or asking through
+     * {@link #isInCheckmate} and {@link #isInStalemate}, costs nothing. For the
+     * team to move, a position seen for the third time or a hundredth ply without
+     * a capture or pawn move is a draw, unless the move that got there was mate.
+     *
+     * @param teamColor which team to get the status of
+     * @return the team's status on the current board
+     */
+    public GameStatus getGameStatus(TeamColor teamColor) {
+        GameStatus status = boardStatus(teamColor);
+        if (teamColor == currentTurn && !status.isGameOver()) {
+            if (getRepetitionCount() >= 3) {
+                return GameStatus.THREEFOLD_REPETITION;
             }
-            if (hasPieces) {
-                break;
+            if (halfmoveClock >= 100) {
+                return GameStatus.FIFTY_MOVE_RULE;
             }
         }
+        return status;
+    }
 
-        if (!hasPieces) {
-            return false;
+    private GameStatus boardStatus(TeamColor teamColor) {
+        if (statusBoard != board || statusModCount != board.modCount()) {
+            statusBoard = board;
+            statusModCount = board.modCount();
+            Arrays.fill(statusCache, null);
+        }
+        GameStatus status = statusCache[teamColor.ordinal()];
+        if (status == null) {
+            status = computeStatus(teamColor);
+            statusCache[teamColor.ordinal()] = status;
         }
+        return status;
+    }
 
-        for (int i = 1; i <= 8; i++) {
-            for (int j = 1; j <= 8; j++) {
-                ChessPosition currentPosition = new ChessPosition(i, j);
-                ChessPiece currentPiece = board.getPiece(currentPosition);
-                if (currentPiece != null && currentPiece.getTeamColor() == teamColor) {
-                    if (!validMoves(currentPosition).isEmpty()) {
-                        return false;
-                    }
-                }
-            }
+    /**
+     * Looks the position up in the {@link Tablebases#shared() shared tablebases},
+     * which settle small endgames long before checkmate or stalemate.
+     *
+     * @return the result with perfect play for the team whose turn it is, or null
+     * if no table covers the position
+     */
+    public TablebaseResult probeTablebases() {
+        return Tablebases.shared().probe(this);
+    }
+
+    private GameStatus computeStatus(TeamColor teamColor) {
+        if (board.pieces(teamColor) == 0) {
+            return GameStatus.NORMAL;
         }
-        return true;
+        return cachedPosition(teamColor).status;
     }
 
     /**
@@ -226,6 +536,8 @@ public class ChessGame {
      */
     public void setBoard(ChessBoard board) {
         this.board = board;
+        undoCount = 0;
+        history.clear();
     }
 
     /**
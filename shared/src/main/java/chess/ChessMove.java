@@ -1,17 +1,31 @@
 package chess;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.Objects;
 
 /**
  * Represents moving a chess piece on a chessboard
  * <p>
+ * Moves are immutable, so every move between two squares on the board is shared
+ * through {@link #of}, created the first time it is asked for.
+ * <p>
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessMoveAdapter.class)
 public class ChessMove {
-    private ChessPosition startPosition;
-    private ChessPosition endPosition;
-    private ChessPiece.PieceType promotionPiece;
+
+    /**
+     * Indexed by {@link PackedMove}. Filled lazily; two threads racing on a slot
+     * at worst each create an equal move, and the final fields make either safe
+     * to share.
+     */
+    private static final ChessMove[] MOVES = new ChessMove[1 << 15];
+
+    private final ChessPosition startPosition;
+    private final ChessPosition endPosition;
+    private final ChessPiece.PieceType promotionPiece;
 
     public ChessMove(ChessPosition startPosition, ChessPosition endPosition,
                      ChessPiece.PieceType promotionPiece) {
@@ -20,6 +34,36 @@ public class ChessMove {
         this.promotionPiece = promotionPiece;
     }
 
+    /**
+     * @return the shared move between two positions, or a new one if either is off
+     * the board
+     */
+    public static ChessMove of(ChessPosition startPosition, ChessPosition endPosition,
+                               ChessPiece.PieceType promotionPiece) {
+        if (!isOnBoard(startPosition) || !isOnBoard(endPosition)) {
+            return new ChessMove(startPosition, endPosition, promotionPiece);
+        }
+        return of(PackedMove.fromChessMove(startPosition, endPosition, promotionPiece));
+    }
+
+    /**
+     * @return the shared move for a {@link PackedMove}
+     */
+    static ChessMove of(int packedMove) {
+        ChessMove move = MOVES[packedMove];
+        if (move == null) {
+            move = new ChessMove(ChessPosition.ofSquare(PackedMove.from(packedMove)),
+                    ChessPosition.ofSquare(PackedMove.to(packedMove)), PackedMove.promotionType(packedMove));
+            MOVES[packedMove] = move;
+        }
+        return move;
+    }
+
+    private static boolean isOnBoard(ChessPosition position) {
+        return position != null && position.getRow() >= 1 && position.getRow() <= 8
+                && position.getColumn() >= 1 && position.getColumn() <= 8;
+    }
+
     public ChessPosition getStartPosition() {
         return startPosition;
     }
@@ -45,4 +89,16 @@ public class ChessMove {
     public ChessPiece.PieceType getPromotionPiece() {
         return promotionPiece;
     }
+
+    /**
+     * @return the move in coordinate notation, such as {@code e2e4} or {@code e7e8q}
+     */
+    @Override
+    public String toString() {
+        String move = startPosition.toString() + endPosition;
+        if (promotionPiece == null) {
+            return move;
+        }
+        return move + ChessPiece.of(ChessGame.TeamColor.BLACK, promotionPiece).toChar();
+    }
 }
@@ -0,0 +1,70 @@
+package chess;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Serializes a {@link ChessMove} with the {@code startPosition},
+ * {@code endPosition} and {@code promotionPiece} fields Gson used by reflection,
+ * and reads it back as the shared instance from {@link ChessMove#of}.
+ */
+class ChessMoveAdapter extends TypeAdapter<ChessMove> {
+
+    private final ChessPositionAdapter positions = new ChessPositionAdapter();
+
+    @Override
+    public void write(JsonWriter out, ChessMove move) throws IOException {
+        if (move == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("startPosition");
+        positions.write(out, move.getStartPosition());
+        out.name("endPosition");
+        positions.write(out, move.getEndPosition());
+        out.name("promotionPiece");
+        if (move.getPromotionPiece() == null) {
+            out.nullValue();
+        } else {
+            out.value(move.getPromotionPiece().name());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public ChessMove read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ChessPosition start = null;
+        ChessPosition end = null;
+        ChessPiece.PieceType promotion = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "startPosition" -> start = positions.read(in);
+                case "endPosition" -> end = positions.read(in);
+                case "promotionPiece" -> {
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    } else {
+                        promotion = ChessPiece.PieceType.valueOf(in.nextString());
+                    }
+                }
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (start == null || end == null) {
+            throw new JsonParseException("Move is missing its start or end position");
+        }
+        return ChessMove.of(start, end, promotion);
+    }
+}
@@ -1,26 +1,55 @@
 package chess;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Objects;
-import java.util.WeakHashMap;
 
 /**
  * Represents a single chess piece
  * <p>
+ * Pieces are immutable, so one instance of each of the twelve color and type
+ * pairs is shared through {@link #of}.
+ * <p>
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessPieceAdapter.class)
 public class ChessPiece {
 
-    public ChessGame.TeamColor pieceColor;
-    public ChessPiece.PieceType type;
+    private static final ChessPiece[] PIECES = new ChessPiece[12];
+
+    static {
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (PieceType type : PieceType.values()) {
+                PIECES[ChessBoard.pieceIndex(color, type)] = new ChessPiece(color, type);
+            }
+        }
+    }
+
+    public final ChessGame.TeamColor pieceColor;
+    public final ChessPiece.PieceType type;
 
     public ChessPiece(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
         this.pieceColor = pieceColor;
         this.type = type;
     }
 
+    /**
+     * @return the shared piece of the given color and type
+     */
+    public static ChessPiece of(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
+        return PIECES[ChessBoard.pieceIndex(pieceColor, type)];
+    }
+
+    /**
+     * @return the shared piece for a bitboard slot
+     */
+    static ChessPiece ofIndex(int index) {
+        return PIECES[index];
+    }
+
     @Override
     public String toString() {
         return "ChessPiece{" +
@@ -29,6 +58,21 @@ public class ChessPiece {
                 '}';
     }
 
+    /**
+     * @return the board-diagram letter for this piece, upper case for white
+     */
+    char toChar() {
+        char c = switch (type) {
+            case KING -> 'k';
+            case QUEEN -> 'q';
+            case BISHOP -> 'b';
+            case KNIGHT -> 'n';
+            case ROOK -> 'r';
+            case PAWN -> 'p';
+        };
+        return pieceColor == ChessGame.TeamColor.WHITE ? Character.toUpperCase(c) : c;
+    }
+
     /**
      * The various different chess piece options
      */
@@ -67,212 +111,37 @@ public class ChessPiece {
         return Objects.hash(pieceColor, type);
     }
 
+    /**
+     * Fills {@code moves} with the same moves as {@link #pieceMoves(ChessBoard, ChessPosition)},
+     * encoded as {@link PackedMove}s, without allocating
+     *
+     * @param moves the list to overwrite
+     */
+    public void pieceMoves(ChessBoard board, ChessPosition myPosition, MoveList moves) {
+        long from = 1L << ChessBoard.square(myPosition.getRow(), myPosition.getColumn());
+        MoveGenerator.generatePseudoLegal(board, pieceColor, from, moves);
+    }
+
     /**
      * Calculates all the positions a chess piece can move to
      * Does not take into account moves that are illegal due to leaving the king in
      * danger
+     * <p>
+     * Knights, kings and pawns read their targets from {@link Bitboards}' attack
+     * tables and sliders from {@link SlidingAttacks}, through the same generator as
+     * {@link #pieceMoves(ChessBoard, ChessPosition, MoveList)}; only the returned
+     * collection is allocated.
      *
      * @return Collection of valid moves
      */
-    private boolean addMoveOrCapture(Collection<ChessMove> validMoves, ChessBoard board, ChessPosition myPosition, ChessPosition checkPosition) {
-        if (board.getPiece(checkPosition) != null) {
-            if (board.getPiece(checkPosition).getTeamColor() != board.getPiece(myPosition).getTeamColor()) {
-                ChessMove captureMove = new ChessMove(myPosition, checkPosition, null);
-                validMoves.add(captureMove);
-            }
-            return false;
-        }
-
-        ChessMove validMove = new ChessMove(myPosition, checkPosition, null);
-        validMoves.add(validMove);
-        return true;
-    }
-    private Collection<ChessMove> getBishopRookQueen(ChessBoard board, ChessPosition startPosition, int rowIncrement, int colIncrement) {
-        Collection<ChessMove> validMoves = new ArrayList<>();
-        int myrow = startPosition.getRow();
-        int mycol = startPosition.getColumn();
-
-        while (true) {
-            myrow += rowIncrement;
-            mycol += colIncrement;
-
-            if (myrow < 1 || myrow > 8 || mycol < 1 || mycol > 8) {
-                break;
-            }
-
-            ChessPosition checkPosition = new ChessPosition(myrow, mycol);
-
-            if (!addMoveOrCapture(validMoves, board, startPosition, checkPosition)) {
-                break;
-            }
-        }
-
-        return validMoves;
-    }
-    private Collection<ChessMove> getKnightKing(ChessBoard board, ChessPosition startPosition, int rowIncrement, int colIncrement) {
-        Collection<ChessMove> validMoves = new ArrayList<>();
-        int myrow = startPosition.getRow();
-        int mycol = startPosition.getColumn();
-
-
-        myrow += rowIncrement;
-        mycol += colIncrement;
-
-        ChessPosition checkPosition = new ChessPosition(myrow, mycol);
-
-        if (!(myrow < 1 || myrow > 8 || mycol < 1 || mycol > 8)) {
-            addMoveOrCapture(validMoves, board, startPosition, checkPosition);
-        }
-        return validMoves;
-    }
-    private void addPawnMove(Collection<ChessMove> validMoves, ChessBoard board, ChessPosition myPosition, int newRow, int newCol) {
-        ChessPosition checkPosition = new ChessPosition(newRow, newCol);
-        if (board.getPiece(checkPosition) == null) {
-            ChessMove validMove = new ChessMove(myPosition, checkPosition, null);
-            validMoves.add(validMove);
-        }
-    }
-
-    private void addPawnCapture(Collection<ChessMove> validMoves, ChessBoard board,
-                                ChessPosition myPosition, int newRow, int newCol, boolean isPromotion) {
-        ChessPosition checkPosition = new ChessPosition(newRow, newCol);
-        if (board.getPiece(checkPosition) != null && board.getPiece(checkPosition).getTeamColor() != board.getPiece(myPosition).getTeamColor()) {
-            if (isPromotion) {
-                addPawnPromotionMoves(validMoves, myPosition, checkPosition);
-            } else {
-                ChessMove captureMove = new ChessMove(myPosition, checkPosition, null);
-                validMoves.add(captureMove);
-            }
-        }
-    }
-    private void addPawnDoubleMove(Collection<ChessMove> validMoves, ChessBoard board, ChessPosition myPosition) {
-        int myRow = myPosition.getRow();
-        int myCol = myPosition.getColumn();
-
-        if (this.pieceColor == ChessGame.TeamColor.WHITE){
-            ChessPosition firstStep = new ChessPosition(myRow + 1, myCol);
-            ChessPosition secondStep = new ChessPosition(myRow + 2, myCol);
-
-            if (board.getPiece(firstStep) == null && board.getPiece(secondStep) == null) {
-                ChessMove doubleMove = new ChessMove(myPosition, secondStep, null);
-                validMoves.add(doubleMove);
-            }
-        }
-        if (this.pieceColor == ChessGame.TeamColor.BLACK){
-            ChessPosition firstStep = new ChessPosition(myRow - 1, myCol);
-            ChessPosition secondStep = new ChessPosition(myRow - 2, myCol);
-
-            if (board.getPiece(firstStep) == null && board.getPiece(secondStep) == null) {
-                ChessMove doubleMove = new ChessMove(myPosition, secondStep, null);
-                validMoves.add(doubleMove);
-            }
-        }
-    }
-
-    private void addPawnPromotionMoves(Collection<ChessMove> validMoves, ChessPosition myPosition, ChessPosition promotionPosition) {
-        validMoves.add(new ChessMove(myPosition, promotionPosition, PieceType.QUEEN));
-        validMoves.add(new ChessMove(myPosition, promotionPosition, PieceType.ROOK));
-        validMoves.add(new ChessMove(myPosition, promotionPosition, PieceType.BISHOP));
-        validMoves.add(new ChessMove(myPosition, promotionPosition, PieceType.KNIGHT));
-    }
-
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
-        Collection<ChessMove> validMoves = new ArrayList<>();
-        int myRow = myPosition.getRow();
-        int myCol = myPosition.getColumn();
-
-        if (this.getPieceType() == PieceType.BISHOP||this.getPieceType() == PieceType.QUEEN) {
-            validMoves.addAll(getBishopRookQueen(board, myPosition, 1, 1));   // Top-right
-            validMoves.addAll(getBishopRookQueen(board, myPosition, 1, -1));  // Top-left
-            validMoves.addAll(getBishopRookQueen(board, myPosition, -1, 1));  // Bottom-right
-            validMoves.addAll(getBishopRookQueen(board, myPosition, -1, -1)); // Bottom-left
-        }
-        if (this.getPieceType() == PieceType.ROOK||this.getPieceType() == PieceType.QUEEN){
-            validMoves.addAll(getBishopRookQueen(board, myPosition, 1, 0));   //Up
-            validMoves.addAll(getBishopRookQueen(board, myPosition, 0, 1));   //Right
-            validMoves.addAll(getBishopRookQueen(board, myPosition, -1, 0));  //Down
-            validMoves.addAll(getBishopRookQueen(board, myPosition, 0, -1));  //Left
-        }
-        if (this.getPieceType() == PieceType.KNIGHT){
-            validMoves.addAll(getKnightKing(board, myPosition, 2, 1));
-            validMoves.addAll(getKnightKing(board, myPosition, 2, -1));
-            validMoves.addAll(getKnightKing(board, myPosition, -2, 1));
-            validMoves.addAll(getKnightKing(board, myPosition, -2, -1));
-            validMoves.addAll(getKnightKing(board, myPosition, 1, 2));
-            validMoves.addAll(getKnightKing(board, myPosition, 1, -2));
-            validMoves.addAll(getKnightKing(board, myPosition, -1, 2));
-            validMoves.addAll(getKnightKing(board, myPosition, -1, -2));
-        }
-        if (this.getPieceType() == PieceType.KING){
-            validMoves.addAll(getKnightKing(board, myPosition, 1, 1)); //TopRight
-            validMoves.addAll(getKnightKing(board, myPosition, 1, 0)); //Up
-            validMoves.addAll(getKnightKing(board, myPosition, 1, -1));//TopLeft
-            validMoves.addAll(getKnightKing(board, myPosition, 0, -1));//Left
-            validMoves.addAll(getKnightKing(board, myPosition, 0, 1)); //Right
-            validMoves.addAll(getKnightKing(board, myPosition, -1, -1));//BottomLeft
-            validMoves.addAll(getKnightKing(board, myPosition, -1, 0)); //Down
-            validMoves.addAll(getKnightKing(board, myPosition, -1, 1));//BottomRight
-        }
-        if(this.getPieceType() == PieceType.PAWN && this.pieceColor == ChessGame.TeamColor.WHITE){
-            if (myRow == 2){
-                addPawnDoubleMove(validMoves, board, myPosition);
-            }
-            if (myRow < 7){
-                addPawnMove(validMoves, board, myPosition,myRow +1, myCol);
-            }
-            if (myRow < 7) {
-                if (myCol < 8) {
-                    addPawnCapture(validMoves, board, myPosition, myRow + 1, myCol + 1, false);
-                }
-                if (myCol > 1) {
-                    addPawnCapture(validMoves, board, myPosition, myRow + 1, myCol - 1, false);
-                }
-            }
-            if (myRow == 7) {
-                ChessPosition forwardPosition = new ChessPosition(myRow + 1, myCol);
-                if (board.getPiece(forwardPosition) == null) {
-                    addPawnPromotionMoves(validMoves, myPosition, forwardPosition);
-                }
-                if (myCol < 8) {
-                    ChessPosition captureRight = new ChessPosition(myRow + 1, myCol + 1);
-                    addPawnCapture(validMoves, board, myPosition, myRow + 1, myCol + 1, true);
-                }
-                if (myCol > 1) {
-                    ChessPosition captureLeft = new ChessPosition(myRow + 1, myCol - 1);
-                    addPawnCapture(validMoves, board, myPosition, myRow + 1, myCol - 1, true);
-                }
-            }
-        }
-        if(this.getPieceType() == PieceType.PAWN && this.pieceColor == ChessGame.TeamColor.BLACK){
-            if (myRow == 7){
-                addPawnDoubleMove(validMoves, board, myPosition);
-            }
-            if (myRow > 2){
-                addPawnMove(validMoves, board, myPosition,myRow - 1, myCol);
-            }
-            if (myRow > 2) {
-                if (myCol < 8) {
-                    addPawnCapture(validMoves, board, myPosition, myRow - 1, myCol + 1, false);
-                }
-                if (myCol > 1) {
-                    addPawnCapture(validMoves, board, myPosition, myRow - 1, myCol - 1, false);
-                }
-            }
-            if (myRow == 2) {
-                ChessPosition forwardPosition = new ChessPosition(myRow - 1, myCol);
-                if (board.getPiece(forwardPosition) == null) {
-                    addPawnPromotionMoves(validMoves, myPosition, forwardPosition);
-                }
-                if (myCol < 8) {
-                    ChessPosition captureRight = new ChessPosition(myRow - 1, myCol + 1);
-                    addPawnCapture(validMoves, board, myPosition, myRow - 1, myCol + 1, true);
-                }
-                if (myCol > 1) {
-                    ChessPosition captureLeft = new ChessPosition(myRow - 1, myCol - 1);
-                    addPawnCapture(validMoves, board, myPosition, myRow - 1, myCol - 1, true);
-                }
+        try (MoveList moves = MoveList.borrow()) {
+            pieceMoves(board, myPosition, moves);
+            Collection<ChessMove> validMoves = new ArrayList<>(moves.size());
+            for (int i = 0; i < moves.size(); i++) {
+                validMoves.add(PackedMove.toChessMove(moves.get(i)));
             }
+            return validMoves;
         }
-        return validMoves;
     }
 }
@@ -0,0 +1,52 @@
+package chess;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Serializes a {@link ChessPiece} as {@code {"pieceColor":..,"type":..}}, the
+ * same layout Gson used by reflection, and reads it back as the shared instance
+ * from {@link ChessPiece#of}, so a loaded game allocates no pieces.
+ */
+class ChessPieceAdapter extends TypeAdapter<ChessPiece> {
+
+    @Override
+    public void write(JsonWriter out, ChessPiece piece) throws IOException {
+        if (piece == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("pieceColor").value(piece.getTeamColor().name());
+        out.name("type").value(piece.getPieceType().name());
+        out.endObject();
+    }
+
+    @Override
+    public ChessPiece read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ChessGame.TeamColor color = null;
+        ChessPiece.PieceType type = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "pieceColor" -> color = ChessGame.TeamColor.valueOf(in.nextString());
+                case "type" -> type = ChessPiece.PieceType.valueOf(in.nextString());
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (color == null || type == null) {
+            throw new JsonParseException("Piece is missing its color or type");
+        }
+        return ChessPiece.of(color, type);
+    }
+}
@@ -1,23 +1,53 @@
 package chess;
 
-import java.util.Objects;
+import com.google.gson.annotations.JsonAdapter;
 
 /**
  * Represents a single square position on a chess board
  * <p>
+ * Positions are immutable, so the 64 squares on the board are shared through
+ * {@link #of}; use it instead of the constructor to avoid allocating.
+ * <p>
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessPositionAdapter.class)
 public class ChessPosition {
 
-    private int row;
-    private int col;
+    private static final ChessPosition[] SQUARES = new ChessPosition[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            SQUARES[square] = new ChessPosition(square / 8 + 1, square % 8 + 1);
+        }
+    }
+
+    private final int row;
+    private final int col;
 
     public ChessPosition(int row, int col) {
         this.row = row;
         this.col = col;
     }
 
+    /**
+     * @return the shared position for a square on the board, or a new one if the
+     * row or column is off the board
+     */
+    public static ChessPosition of(int row, int col) {
+        if (row < 1 || row > 8 || col < 1 || col > 8) {
+            return new ChessPosition(row, col);
+        }
+        return SQUARES[ChessBoard.square(row, col)];
+    }
+
+    /**
+     * @return the shared position for a bit index, as used by the bitboards
+     */
+    static ChessPosition ofSquare(int square) {
+        return SQUARES[square];
+    }
+
     /**
      * @return which row this position is in
      * 1 codes for the bottom row
@@ -36,7 +66,7 @@ public class ChessPosition {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, col);
+        return 31 * row + col;
     }
 
     /**
@@ -46,4 +76,12 @@ public class ChessPosition {
     public int getColumn() {
         return col;
     }
+
+    /**
+     * @return the square in algebraic notation, such as {@code e4}
+     */
+    @Override
+    public String toString() {
+        return "" + (char) ('a' + col - 1) + row;
+    }
 }
@@ -0,0 +1,60 @@
+package chess;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Serializes a {@link ChessPosition} as {@code {"row":..,"col":..}}, the same
+ * layout Gson used by reflection, and reads it back as the shared instance from
+ * {@link ChessPosition#of}.
+ */
+class ChessPositionAdapter extends TypeAdapter<ChessPosition> {
+
+    @Override
+    public void write(JsonWriter out, ChessPosition position) throws IOException {
+        if (position == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("row").value(position.getRow());
+        out.name("col").value(position.getColumn());
+        out.endObject();
+    }
+
+    @Override
+    public ChessPosition read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        int row = 0;
+        int col = 0;
+        boolean hasRow = false;
+        boolean hasCol = false;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "row" -> {
+                    row = in.nextInt();
+                    hasRow = true;
+                }
+                case "col" -> {
+                    col = in.nextInt();
+                    hasCol = true;
+                }
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (!hasRow || !hasCol) {
+            throw new JsonParseException("Position is missing its row or column");
+        }
+        return ChessPosition.of(row, col);
+    }
+}
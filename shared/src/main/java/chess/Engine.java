@@ -0,0 +1,561 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A computer player that picks moves by searching the game tree.
+ * <p>
+ * The search deepens one ply at a time until it runs out of depth, nodes or
+ * time, keeping the best move of the last finished iteration. Each iteration is
+ * a principal variation search: the first move at a node gets the full
+ * alpha-beta window and the rest are tried with a null window first, which
+ * only pays off because moves are ordered well. The order is the transposition
+ * table's move, then captures by most valuable victim and least valuable
+ * attacker, then quiet moves that caused cutoffs at the same ply (killers) or
+ * anywhere (history). Leaf nodes run a quiescence search over captures and
+ * promotions so the evaluation is never taken in the middle of an exchange.
+ * <p>
+ * With more than one thread the search is "Lazy SMP": every thread searches the
+ * same position with its own move ordering state, half of the helpers one ply
+ * deeper than the main thread, and they cooperate only through the shared,
+ * lock-free transposition table. Results found by helpers reach the main thread
+ * as table hits, and the main thread's result is the one reported.
+ * <p>
+ * Positions covered by the engine's {@link Tablebases} are not searched: their
+ * exact distance to mate, or draw, is read from the table instead. A position
+ * that repeats one earlier in the line, or reaches the fifty-move limit, is
+ * scored as a draw.
+ * <p>
+ * An engine keeps its transposition table between searches. It runs one search
+ * at a time; {@link #search} calls from several threads take turns. Interrupting
+ * the searching thread stops the search as if its time had run out.
+ */
+public class Engine implements AutoCloseable {
+
+    public static final int DEFAULT_TABLE_ENTRIES = 1 << 20;
+
+    static final int MAX_PLY = 64;
+    static final int MATE = 30_000;
+    /** Scores at least this far from zero are mates, with room for tablebase mates deeper than MAX_PLY */
+    static final int MATE_BOUND = MATE - MAX_PLY - Tablebase.MAX_PLIES - 1;
+    private static final int INFINITY = 32_000;
+    private static final int NO_SCORE = Integer.MIN_VALUE;
+
+    private static final int TABLE_MOVE_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 28;
+    private static final int KILLER_SCORE = 1 << 27;
+    private static final int HISTORY_LIMIT = 1 << 26;
+
+    private final TranspositionTable table;
+    private final Worker[] workers;
+    private final ExecutorService helpers;
+    private volatile Tablebases tablebases = Tablebases.shared();
+
+    private final AtomicLong totalNodes = new AtomicLong();
+    private volatile boolean stop;
+    private volatile boolean canStop;
+    private long nodeLimit;
+    private long deadline;
+    private long searchStart;
+    private Consumer<SearchResult> progress;
+
+    public Engine() {
+        this(DEFAULT_TABLE_ENTRIES, 1);
+    }
+
+    /**
+     * @param tableEntries the number of transposition table slots
+     */
+    public Engine(int tableEntries) {
+        this(tableEntries, 1);
+    }
+
+    /**
+     * @param tableEntries the number of transposition table slots, shared by every thread
+     * @param threads      how many threads search at once
+     */
+    public Engine(int tableEntries, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("An engine needs at least one thread");
+        }
+        table = new TranspositionTable(tableEntries);
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(i);
+        }
+        helpers = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, runnable -> {
+            Thread thread = new Thread(runnable, "engine-helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return how many threads search at once
+     */
+    public int threads() {
+        return workers.length;
+    }
+
+    /**
+     * Sets the endgame tables the search consults. By default an engine uses
+     * {@link Tablebases#shared()}.
+     */
+    public void setTablebases(Tablebases tablebases) {
+        this.tablebases = tablebases;
+    }
+
+    /**
+     * Forgets everything learned from earlier searches
+     */
+    public synchronized void clear() {
+        table.clear();
+        for (Worker worker : workers) {
+            worker.clearHistory();
+        }
+    }
+
+    /**
+     * Finds the best move for the team whose turn it is. The game is not changed.
+     *
+     * @param position the game to search
+     * @param limits   when to stop searching
+     * @return the best move found and how the search went
+     */
+    public SearchResult search(ChessGame position, SearchLimits limits) {
+        return search(position, limits, null);
+    }
+
+    /**
+     * Finds the best move for the team whose turn it is, reporting the result of
+     * each finished iteration as it goes. The game is not changed.
+     *
+     * @param position the game to search
+     * @param limits   when to stop searching
+     * @param progress called on the searching thread after every iteration with the
+     *                 search so far; may be null
+     * @return the best move found and how the search went
+     */
+    public synchronized SearchResult search(ChessGame position, SearchLimits limits, Consumer<SearchResult> progress) {
+        long start = System.nanoTime();
+        searchStart = start;
+        this.progress = progress;
+        totalNodes.set(0);
+        nodeLimit = limits.nodes();
+        deadline = limits.millis() >= Long.MAX_VALUE / 1_000_000 ? Long.MAX_VALUE : start + limits.millis() * 1_000_000;
+        canStop = false;
+        stop = false;
+
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 1; i < workers.length; i++) {
+            Worker helper = workers[i];
+            running.add(helpers.submit(() -> helper.run(position, limits.depth())));
+        }
+        SearchResult result;
+        try {
+            result = workers[0].run(position, limits.depth());
+        } finally {
+            stop = true;
+            awaitHelpers(running);
+            this.progress = null;
+        }
+        return new SearchResult(result.bestMove(), result.score(), result.depth(), totalNodes.get(),
+                System.nanoTime() - start, result.principalVariation());
+    }
+
+    /**
+     * Waits for the helpers to finish, even if interrupted, since the next search
+     * must not hand them new work while they still run
+     */
+    private static void awaitHelpers(List<Future<?>> running) {
+        boolean interrupted = false;
+        for (Future<?> helper : running) {
+            while (true) {
+                try {
+                    helper.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Search thread failed", e.getCause());
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the helper threads. The engine cannot search afterward.
+     */
+    @Override
+    public void close() {
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    /**
+     * One thread's search state: its own copy of the game and its own move
+     * ordering tables, so workers share nothing but the transposition table.
+     */
+    private final class Worker {
+        private final boolean main;
+        private final int depthOffset;
+        private final int[][] moveScores = new int[MAX_PLY + 1][MoveList.CAPACITY];
+        private final int[][] killers = new int[MAX_PLY + 1][2];
+        private final int[][] history = new int[64][64];
+        private final int[][] principalVariation = new int[MAX_PLY + 1][MAX_PLY + 1];
+        private final int[] principalVariationLength = new int[MAX_PLY + 1];
+
+        private ChessGame game;
+        private ChessBoard board;
+        private long nodes;
+        private long publishedNodes;
+        private boolean stopped;
+
+        Worker(int id) {
+            main = id == 0;
+            // half the helpers search a ply ahead, so workers spread over two depths
+            depthOffset = id % 2;
+        }
+
+        void clearHistory() {
+            for (int[] squares : history) {
+                Arrays.fill(squares, 0);
+            }
+        }
+
+        SearchResult run(ChessGame position, int maxDepth) {
+            // the copy keeps the game's earlier positions, so repeating one is seen as a draw
+            game = position.copy();
+            board = game.getBoard();
+            nodes = 0;
+            publishedNodes = 0;
+            stopped = false;
+            for (int[] plyKillers : killers) {
+                plyKillers[0] = 0;
+                plyKillers[1] = 0;
+            }
+            for (int[] squares : history) {
+                for (int to = 0; to < 64; to++) {
+                    squares[to] /= 8;
+                }
+            }
+
+            int bestScore = 0;
+            int completedDepth = 0;
+            List<ChessMove> line = List.of();
+            for (int depth = 1; depth <= maxDepth; depth++) {
+                int searchDepth = Math.min(depth + depthOffset, MAX_PLY - 1);
+                int score = search(searchDepth, -INFINITY, INFINITY, 0);
+                if (stopped || stop && !main) {
+                    break;
+                }
+                bestScore = score;
+                completedDepth = searchDepth;
+                line = currentLine();
+                if (main) {
+                    canStop = true;
+                    if (progress != null) {
+                        publishNodes();
+                        progress.accept(new SearchResult(line.isEmpty() ? null : line.get(0), score, searchDepth,
+                                totalNodes.get(), System.nanoTime() - searchStart, line));
+                    }
+                }
+                if (Math.abs(score) >= MATE - searchDepth || line.isEmpty()) {
+                    break;
+                }
+            }
+            publishNodes();
+            game = null;
+            board = null;
+            return new SearchResult(line.isEmpty() ? null : line.get(0), bestScore, completedDepth, nodes, 0L, line);
+        }
+
+        private int search(int depth, int alpha, int beta, int ply) {
+            principalVariationLength[ply] = ply;
+            ChessGame.TeamColor us = game.getTeamTurn();
+            if (ply >= MAX_PLY) {
+                return Evaluation.evaluate(board, us);
+            }
+            if (ply > 0) {
+                // a repeat within the search is scored as the draw it can be forced into
+                if (game.getRepetitionCount() > 1 || game.getHalfmoveClock() >= 100) {
+                    return 0;
+                }
+                int known = probeTablebases(us, ply);
+                if (known != NO_SCORE) {
+                    return known;
+                }
+            }
+            boolean inCheck = game.isInCheck(us);
+            if (inCheck) {
+                depth++;
+            }
+            if (depth <= 0) {
+                return quiesce(alpha, beta, ply);
+            }
+            if (shouldStop()) {
+                return 0;
+            }
+            nodes++;
+
+            long key = game.getPositionKey();
+            long entry = table.probe(key);
+            int tableMove = 0;
+            if (entry != 0) {
+                tableMove = TranspositionTable.move(entry);
+                if (beta - alpha == 1 && TranspositionTable.depth(entry) >= depth) {
+                    int score = TranspositionTable.score(entry, ply);
+                    int bound = TranspositionTable.bound(entry);
+                    if (bound == TranspositionTable.EXACT
+                            || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                            || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+                        return score;
+                    }
+                }
+            }
+
+            try (MoveList moves = MoveList.borrow()) {
+                MoveGenerator.generateLegal(board, us, -1L, moves);
+                if (moves.isEmpty()) {
+                    return inCheck ? -MATE + ply : 0;
+                }
+                scoreMoves(moves, ply, tableMove);
+                int originalAlpha = alpha;
+                int bestScore = -INFINITY;
+                int bestMove = 0;
+                for (int i = 0; i < moves.size(); i++) {
+                    int move = selectMove(moves, ply, i);
+                    boolean quiet = isQuiet(move);
+                    game.applyMove(move);
+                    int score;
+                    if (i == 0) {
+                        score = -search(depth - 1, -beta, -alpha, ply + 1);
+                    } else {
+                        score = -search(depth - 1, -alpha - 1, -alpha, ply + 1);
+                        if (score > alpha && score < beta) {
+                            score = -search(depth - 1, -beta, -alpha, ply + 1);
+                        }
+                    }
+                    game.undoMove();
+                    if (stopped) {
+                        return 0;
+                    }
+                    if (score > bestScore) {
+                        bestScore = score;
+                        bestMove = move;
+                        if (score > alpha) {
+                            alpha = score;
+                            updateLine(ply, move);
+                            if (alpha >= beta) {
+                                if (quiet) {
+                                    recordCutoff(move, depth, ply);
+                                }
+                                break;
+                            }
+                        }
+                    }
+                }
+                int bound = bestScore >= beta ? TranspositionTable.LOWER_BOUND
+                        : bestScore > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER_BOUND;
+                table.store(key, bestMove, bestScore, depth, bound, ply);
+                return bestScore;
+            }
+        }
+
+        /**
+         * @return the exact score of a position the tablebases cover, or NO_SCORE
+         */
+        private int probeTablebases(ChessGame.TeamColor us, int ply) {
+            int value = tablebases.probe(board, us);
+            if (value == Tablebases.UNKNOWN) {
+                return NO_SCORE;
+            }
+            if (value > 0) {
+                return MATE - ply - value;
+            }
+            return value < 0 ? -MATE + ply - value - 1 : 0;
+        }
+
+        /**
+         * Searches only captures and promotions, letting the side to move stand pat
+         * on the static evaluation, until the position is quiet. In check every
+         * evasion is searched, since standing pat is not an option.
+         */
+        private int quiesce(int alpha, int beta, int ply) {
+            principalVariationLength[ply] = ply;
+            if (shouldStop()) {
+                return 0;
+            }
+            nodes++;
+            ChessGame.TeamColor us = game.getTeamTurn();
+            if (ply >= MAX_PLY) {
+                return Evaluation.evaluate(board, us);
+            }
+            int known = probeTablebases(us, ply);
+            if (known != NO_SCORE) {
+                return known;
+            }
+            boolean inCheck = game.isInCheck(us);
+            int bestScore = -INFINITY;
+            if (!inCheck) {
+                bestScore = Evaluation.evaluate(board, us);
+                if (bestScore >= beta) {
+                    return bestScore;
+                }
+                alpha = Math.max(alpha, bestScore);
+            }
+
+            try (MoveList moves = MoveList.borrow()) {
+                MoveGenerator.generateLegal(board, us, -1L, moves);
+                if (inCheck && moves.isEmpty()) {
+                    return -MATE + ply;
+                }
+                scoreMoves(moves, ply, 0);
+                for (int i = 0; i < moves.size(); i++) {
+                    int move = selectMove(moves, ply, i);
+                    if (!inCheck && isQuiet(move)) {
+                        // moves are sorted, so every move from here on is quiet
+                        break;
+                    }
+                    game.applyMove(move);
+                    int score = -quiesce(-beta, -alpha, ply + 1);
+                    game.undoMove();
+                    if (stopped) {
+                        return 0;
+                    }
+                    if (score > bestScore) {
+                        bestScore = score;
+                        if (score > alpha) {
+                            alpha = score;
+                            updateLine(ply, move);
+                            if (alpha >= beta) {
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+            return bestScore;
+        }
+
+        /**
+         * Only the main worker checks the limits and its thread's interrupt status;
+         * helpers stop when it tells them to.
+         * Node counts are published in batches so workers rarely touch shared state.
+         */
+        private boolean shouldStop() {
+            if (stopped) {
+                return true;
+            }
+            if ((nodes & 1023) == 0) {
+                publishNodes();
+            }
+            if (stop) {
+                stopped = true;
+            } else if (main && canStop
+                    && (totalNodes.get() + nodes - publishedNodes >= nodeLimit
+                    || ((nodes & 1023) == 0
+                    && (System.nanoTime() >= deadline || Thread.currentThread().isInterrupted())))) {
+                stop = true;
+                stopped = true;
+            }
+            return stopped;
+        }
+
+        private void publishNodes() {
+            totalNodes.addAndGet(nodes - publishedNodes);
+            publishedNodes = nodes;
+        }
+
+        private boolean isQuiet(int move) {
+            return board.pieceIndexAt(PackedMove.to(move)) == ChessBoard.NO_PIECE && PackedMove.promotion(move) < 0;
+        }
+
+        private void scoreMoves(MoveList moves, int ply, int tableMove) {
+            int[] scores = moveScores[ply];
+            int[] plyKillers = killers[ply];
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.moves[i];
+                int from = PackedMove.from(move);
+                int to = PackedMove.to(move);
+                int victim = board.pieceIndexAt(to);
+                int promotion = PackedMove.promotion(move);
+                if (move == tableMove) {
+                    scores[i] = TABLE_MOVE_SCORE;
+                } else if (victim != ChessBoard.NO_PIECE || promotion >= 0) {
+                    int gain = victim == ChessBoard.NO_PIECE ? 0 : Evaluation.PIECE_VALUES[victim % 6] * 16;
+                    if (promotion >= 0) {
+                        gain += Evaluation.PIECE_VALUES[promotion] * 16;
+                    }
+                    scores[i] = CAPTURE_SCORE + gain - Evaluation.PIECE_VALUES[board.pieceIndexAt(from) % 6] / 16;
+                } else if (move == plyKillers[0]) {
+                    scores[i] = KILLER_SCORE + 1;
+                } else if (move == plyKillers[1]) {
+                    scores[i] = KILLER_SCORE;
+                } else {
+                    scores[i] = history[from][to];
+                }
+            }
+        }
+
+        /**
+         * Swaps the best-scored move from {@code index} onward into {@code index}, so
+         * moves are sorted only as far as the search gets before a cutoff
+         */
+        private int selectMove(MoveList moves, int ply, int index) {
+            int[] scores = moveScores[ply];
+            int best = index;
+            for (int i = index + 1; i < moves.size(); i++) {
+                if (scores[i] > scores[best]) {
+                    best = i;
+                }
+            }
+            int move = moves.moves[best];
+            moves.moves[best] = moves.moves[index];
+            moves.moves[index] = move;
+            int score = scores[best];
+            scores[best] = scores[index];
+            scores[index] = score;
+            return move;
+        }
+
+        private void recordCutoff(int move, int depth, int ply) {
+            int[] plyKillers = killers[ply];
+            if (plyKillers[0] != move) {
+                plyKillers[1] = plyKillers[0];
+                plyKillers[0] = move;
+            }
+            int[] fromHistory = history[PackedMove.from(move)];
+            int to = PackedMove.to(move);
+            fromHistory[to] = Math.min(fromHistory[to] + depth * depth, HISTORY_LIMIT);
+        }
+
+        private void updateLine(int ply, int move) {
+            int[] line = principalVariation[ply];
+            line[ply] = move;
+            int length = principalVariationLength[ply + 1];
+            System.arraycopy(principalVariation[ply + 1], ply + 1, line, ply + 1, length - ply - 1);
+            principalVariationLength[ply] = Math.max(length, ply + 1);
+        }
+
+        private List<ChessMove> currentLine() {
+            List<ChessMove> line = new ArrayList<>(principalVariationLength[0]);
+            for (int i = 0; i < principalVariationLength[0]; i++) {
+                line.add(PackedMove.toChessMove(principalVariation[0][i]));
+            }
+            return line;
+        }
+    }
+}
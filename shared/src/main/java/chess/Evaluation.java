@@ -0,0 +1,134 @@
+package chess;
+
+/**
+ * Static evaluation for the search: material plus piece-square tables, with the
+ * king's table blended from middlegame to endgame as pieces come off.
+ * <p>
+ * The tables are the widely used "simplified evaluation function" values. They
+ * are written from white's side with row 8 first, the way a board is printed.
+ */
+final class Evaluation {
+
+    static final int[] PIECE_VALUES = {0, 900, 330, 320, 500, 100};
+
+    private static final int[] PHASE_WEIGHTS = {0, 4, 1, 1, 2, 0};
+    private static final int FULL_PHASE = 24;
+
+    private static final int[] KING_MIDDLEGAME = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+            20, 20, 0, 0, 0, 0, 20, 20,
+            20, 30, 10, 0, 0, 10, 30, 20
+    };
+    private static final int[] KING_ENDGAME = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50
+    };
+    private static final int[] QUEEN = {
+            -20, -10, -10, -5, -5, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 5, 5, 5, 0, -10,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            0, 0, 5, 5, 5, 5, 0, -5,
+            -10, 5, 5, 5, 5, 5, 0, -10,
+            -10, 0, 5, 0, 0, 0, 0, -10,
+            -20, -10, -10, -5, -5, -10, -10, -20
+    };
+    private static final int[] BISHOP = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 10, 10, 5, 0, -10,
+            -10, 5, 5, 10, 10, 5, 5, -10,
+            -10, 0, 10, 10, 10, 10, 0, -10,
+            -10, 10, 10, 10, 10, 10, 10, -10,
+            -10, 5, 0, 0, 0, 0, 5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20
+    };
+    private static final int[] KNIGHT = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20, 0, 0, 0, 0, -20, -40,
+            -30, 0, 10, 15, 15, 10, 0, -30,
+            -30, 5, 15, 20, 20, 15, 5, -30,
+            -30, 0, 15, 20, 20, 15, 0, -30,
+            -30, 5, 10, 15, 15, 10, 5, -30,
+            -40, -20, 0, 5, 5, 0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50
+    };
+    private static final int[] ROOK = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            5, 10, 10, 10, 10, 10, 10, 5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            0, 0, 0, 5, 5, 0, 0, 0
+    };
+    private static final int[] PAWN = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+            5, 5, 10, 25, 25, 10, 5, 5,
+            0, 0, 0, 20, 20, 0, 0, 0,
+            5, -5, -10, 0, 0, -10, -5, 5,
+            5, 10, 10, -20, -20, 10, 10, 5,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    /**
+     * Material plus placement for each piece index and square, from white's side:
+     * black pieces are negative
+     */
+    private static final int[][] MIDDLEGAME = new int[12][64];
+    private static final int[][] ENDGAME = new int[12][64];
+
+    static {
+        int[][] middlegame = {KING_MIDDLEGAME, QUEEN, BISHOP, KNIGHT, ROOK, PAWN};
+        int[][] endgame = {KING_ENDGAME, QUEEN, BISHOP, KNIGHT, ROOK, PAWN};
+        for (int type = 0; type < 6; type++) {
+            for (int square = 0; square < 64; square++) {
+                // the tables start at row 8, so white reads them flipped and black as written
+                int whiteSquare = (7 - square / 8) * 8 + square % 8;
+                MIDDLEGAME[type][square] = PIECE_VALUES[type] + middlegame[type][whiteSquare];
+                ENDGAME[type][square] = PIECE_VALUES[type] + endgame[type][whiteSquare];
+                MIDDLEGAME[6 + type][square] = -(PIECE_VALUES[type] + middlegame[type][square]);
+                ENDGAME[6 + type][square] = -(PIECE_VALUES[type] + endgame[type][square]);
+            }
+        }
+    }
+
+    private Evaluation() {
+    }
+
+    /**
+     * @return the position's score in centipawns from the side of {@code toMove}
+     */
+    static int evaluate(ChessBoard board, ChessGame.TeamColor toMove) {
+        int middlegame = 0;
+        int endgame = 0;
+        int phase = 0;
+        for (int index = 0; index < 12; index++) {
+            long pieces = board.pieces(index);
+            phase += PHASE_WEIGHTS[index % 6] * Long.bitCount(pieces);
+            while (pieces != 0) {
+                int square = Long.numberOfTrailingZeros(pieces);
+                middlegame += MIDDLEGAME[index][square];
+                endgame += ENDGAME[index][square];
+                pieces &= pieces - 1;
+            }
+        }
+        phase = Math.min(phase, FULL_PHASE);
+        int score = (middlegame * phase + endgame * (FULL_PHASE - phase)) / FULL_PHASE;
+        return toMove == ChessGame.TeamColor.WHITE ? score : -score;
+    }
+}
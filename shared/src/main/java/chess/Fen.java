@@ -0,0 +1,236 @@
+package chess;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation, such as
+ * {@code rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1}.
+ * <p>
+ * A FEN string is a compact, canonical key for a position: equal positions
+ * always encode to the same string. The en passant square is only written when
+ * a pawn could actually make the capture, so a double step with no pawn beside
+ * it encodes the same as any other move.
+ */
+public final class Fen {
+
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final char[] LETTERS = new char[12];
+    private static final String CASTLING = "KQkq";
+
+    static {
+        for (int index = 0; index < 12; index++) {
+            LETTERS[index] = ChessBoard.pieceForIndex(index).toChar();
+        }
+    }
+
+    private Fen() {
+    }
+
+    /**
+     * @return the full six-field FEN of a game
+     */
+    public static String encode(ChessGame game) {
+        StringBuilder fen = new StringBuilder(90);
+        appendPlacement(fen, game.getBoard());
+        fen.append(game.getTeamTurn() == ChessGame.TeamColor.BLACK ? " b " : " w ");
+        ChessBoard board = game.getBoard();
+        int rights = board.castlingRights();
+        if (rights == 0) {
+            fen.append('-');
+        }
+        for (int right = 0; right < 4; right++) {
+            if ((rights & (1 << right)) != 0) {
+                fen.append(CASTLING.charAt(right));
+            }
+        }
+        int enPassant = board.enPassantSquare();
+        if (enPassant == 0) {
+            fen.append(" -");
+        } else {
+            fen.append(' ').append((char) ('a' + enPassant % 8)).append((char) ('1' + enPassant / 8));
+        }
+        return fen.append(' ').append(game.getHalfmoveClock()).append(' ')
+                .append(game.getPlyCount() / 2 + 1).toString();
+    }
+
+    /**
+     * @return the piece placement field of a board, rank 8 first
+     */
+    public static String encode(ChessBoard board) {
+        StringBuilder fen = new StringBuilder(72);
+        appendPlacement(fen, board);
+        return fen.toString();
+    }
+
+    /**
+     * Builds a game from a FEN string. Only the piece placement is required; the
+     * side to move defaults to white, castling and en passant to none, and the
+     * move counters to the start of a game. A castling right whose king or rook
+     * has left its starting square is dropped.
+     *
+     * @throws IllegalArgumentException if the placement, side to move, castling
+     *                                  rights, en passant square or move counters
+     *                                  are malformed
+     */
+    public static ChessGame decode(String fen) {
+        String text = fen.trim();
+        int end = placementEnd(text);
+        ChessBoard board = decodePlacement(text, end, fen);
+
+        int side = end;
+        while (side < text.length() && text.charAt(side) == ' ') {
+            side++;
+        }
+        ChessGame.TeamColor toMove = ChessGame.TeamColor.WHITE;
+        if (side < text.length()) {
+            int sideEnd = side + 1;
+            if ((sideEnd < text.length() && text.charAt(sideEnd) != ' ')
+                    || (text.charAt(side) != 'w' && text.charAt(side) != 'b')) {
+                throw new IllegalArgumentException("Side to move must be 'w' or 'b' in " + fen);
+            }
+            if (text.charAt(side) == 'b') {
+                toMove = ChessGame.TeamColor.BLACK;
+            }
+        }
+        ChessGame game = new ChessGame(board, toMove);
+
+        String[] fields = text.split(" +");
+        board.setCastlingRights(fields.length > 2 ? castlingRights(fields[2], board.castlingRights(), fen) : 0);
+        if (fields.length > 3) {
+            board.setEnPassantSquare(enPassantSquare(fields[3], game.getTeamTurn(), board, fen));
+        }
+        int black = game.getTeamTurn() == ChessGame.TeamColor.BLACK ? 1 : 0;
+        game.setHalfmoveClock(fields.length > 4 ? counter(fields[4], 0, fen) : 0);
+        game.setPlyCount((fields.length > 5 ? counter(fields[5], 1, fen) - 1 : 0) * 2 + black);
+        return game;
+    }
+
+    /**
+     * @param placed the rights the piece placement allows; a right outside them is
+     *               dropped rather than rejected
+     */
+    private static int castlingRights(String field, int placed, String fen) {
+        if (field.equals("-")) {
+            return 0;
+        }
+        int rights = 0;
+        for (int i = 0; i < field.length(); i++) {
+            int right = CASTLING.indexOf(field.charAt(i));
+            if (right < 0 || (rights & (1 << right)) != 0) {
+                throw new IllegalArgumentException("Castling rights must be '-' or letters from KQkq in " + fen);
+            }
+            rights |= 1 << right;
+        }
+        return rights & placed;
+    }
+
+    /**
+     * @return the en passant square if a pawn of the team to move can take there, else 0
+     */
+    private static int enPassantSquare(String field, ChessGame.TeamColor toMove, ChessBoard board, String fen) {
+        if (field.equals("-")) {
+            return 0;
+        }
+        char row = toMove == ChessGame.TeamColor.WHITE ? '6' : '3';
+        if (field.length() != 2 || field.charAt(0) < 'a' || field.charAt(0) > 'h' || field.charAt(1) != row) {
+            throw new IllegalArgumentException("En passant square must be '-' or a square on row " + row + " in " + fen);
+        }
+        int square = ChessBoard.square(row - '0', field.charAt(0) - 'a' + 1);
+        long takers = Bitboards.pawnAttacksFrom(square, toMove.opponent()) & board.pieces(toMove, ChessPiece.PieceType.PAWN);
+        return takers != 0 ? square : 0;
+    }
+
+    private static int counter(String field, int min, String fen) {
+        try {
+            int value = Integer.parseInt(field);
+            if (value >= min) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Move counter must be a number of at least " + min + " in " + fen);
+    }
+
+    /**
+     * Builds a board from the piece placement field of a FEN string. Any later
+     * fields are ignored.
+     *
+     * @throws IllegalArgumentException if the placement is malformed
+     */
+    public static ChessBoard decodeBoard(String fen) {
+        String text = fen.trim();
+        return decodePlacement(text, placementEnd(text), fen);
+    }
+
+    private static void appendPlacement(StringBuilder fen, ChessBoard board) {
+        for (int row = 8; row >= 1; row--) {
+            int empty = 0;
+            for (int col = 1; col <= 8; col++) {
+                int index = board.pieceIndexAt(ChessBoard.square(row, col));
+                if (index == ChessBoard.NO_PIECE) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                fen.append(LETTERS[index]);
+            }
+            if (empty > 0) {
+                fen.append((char) ('0' + empty));
+            }
+            if (row > 1) {
+                fen.append('/');
+            }
+        }
+    }
+
+    private static int placementEnd(String text) {
+        int end = text.indexOf(' ');
+        return end < 0 ? text.length() : end;
+    }
+
+    private static ChessBoard decodePlacement(String text, int end, String fen) {
+        ChessBoard board = new ChessBoard();
+        int row = 8;
+        int col = 1;
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '/') {
+                if (col != 9 || row == 1) {
+                    throw new IllegalArgumentException("Rank " + row + " does not have 8 squares in " + fen);
+                }
+                row--;
+                col = 1;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+            } else {
+                int index = indexOf(c);
+                if (index == ChessBoard.NO_PIECE) {
+                    throw new IllegalArgumentException("Unknown piece '" + c + "' in " + fen);
+                }
+                if (col > 8) {
+                    throw new IllegalArgumentException("Rank " + row + " does not have 8 squares in " + fen);
+                }
+                board.addPiece(ChessPosition.of(row, col++), ChessBoard.pieceForIndex(index));
+            }
+            if (col > 9) {
+                throw new IllegalArgumentException("Rank " + row + " does not have 8 squares in " + fen);
+            }
+        }
+        if (row != 1 || col != 9) {
+            throw new IllegalArgumentException("Piece placement must have 8 ranks of 8 squares in " + fen);
+        }
+        return board;
+    }
+
+    private static int indexOf(char letter) {
+        for (int index = 0; index < 12; index++) {
+            if (LETTERS[index] == letter) {
+                return index;
+            }
+        }
+        return ChessBoard.NO_PIECE;
+    }
+}
@@ -0,0 +1,99 @@
+package chess;
+
+/**
+ * A compact, versioned binary encoding of a {@link ChessGame} for storage.
+ * <p>
+ * Each game is 38 bytes:
+ * <ul>
+ *     <li>byte 0: the format version</li>
+ *     <li>bytes 1-32: the 64 squares, two per byte with the lower-numbered square
+ *     in the low nibble. A nibble is 0 for an empty square, otherwise the
+ *     piece's bitboard slot + 1.</li>
+ *     <li>byte 33: game state flags, bit 0 set when black is to move and bit 1
+ *     when the game is over. Bits 2-5 are the castling rights, in the order
+ *     {@code KQkq}.</li>
+ *     <li>byte 34: the halfmove clock, capped at 255</li>
+ *     <li>bytes 35-36: the ply count, big-endian, capped at 65535</li>
+ *     <li>byte 37: the en passant square, or 0 for none</li>
+ * </ul>
+ * The positions a game passed through are not stored, so a decoded game only
+ * spots repetitions among the moves made after decoding.
+ */
+public final class GameCodec {
+
+    public static final byte VERSION = 1;
+    public static final int LENGTH = 38;
+
+    private static final int FLAGS = 33;
+
+    private static final int BLACK_TO_MOVE = 1;
+    private static final int GAME_OVER = 1 << 1;
+    private static final int CASTLING_SHIFT = 2;
+
+    private GameCodec() {
+    }
+
+    public static byte[] encode(ChessGame game) {
+        byte[] bytes = new byte[LENGTH];
+        bytes[0] = VERSION;
+        ChessBoard board = game.getBoard();
+        for (int square = 0; square < 64; square += 2) {
+            int low = board.pieceIndexAt(square) + 1;
+            int high = board.pieceIndexAt(square + 1) + 1;
+            bytes[1 + square / 2] = (byte) (low | (high << 4));
+        }
+        int flags = 0;
+        if (game.getTeamTurn() == ChessGame.TeamColor.BLACK) {
+            flags |= BLACK_TO_MOVE;
+        }
+        if (game.isGameOver()) {
+            flags |= GAME_OVER;
+        }
+        flags |= board.castlingRights() << CASTLING_SHIFT;
+        bytes[FLAGS] = (byte) flags;
+        bytes[34] = (byte) Math.min(game.getHalfmoveClock(), 0xFF);
+        int plies = Math.min(game.getPlyCount(), 0xFFFF);
+        bytes[35] = (byte) (plies >>> 8);
+        bytes[36] = (byte) plies;
+        bytes[37] = (byte) board.enPassantSquare();
+        return bytes;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a game in this format
+     */
+    public static ChessGame decode(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            throw new IllegalArgumentException("No encoded game");
+        }
+        if (bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Unknown game encoding version " + bytes[0]);
+        }
+        if (bytes.length != LENGTH) {
+            throw new IllegalArgumentException("Encoded game must be " + LENGTH + " bytes, was " + bytes.length);
+        }
+        ChessBoard board = new ChessBoard();
+        for (int square = 0; square < 64; square++) {
+            int nibble = (bytes[1 + square / 2] >>> ((square & 1) * 4)) & 0xF;
+            if (nibble > 12) {
+                throw new IllegalArgumentException("Invalid piece " + nibble + " on square " + square);
+            }
+            if (nibble != 0) {
+                board.addPiece(ChessPosition.ofSquare(square), ChessBoard.pieceForIndex(nibble - 1));
+            }
+        }
+        int flags = bytes[FLAGS];
+        int enPassant = bytes[37];
+        if (enPassant != 0 && (enPassant < 16 || enPassant >= 24) && (enPassant < 40 || enPassant >= 48)) {
+            throw new IllegalArgumentException("Invalid en passant square " + enPassant);
+        }
+        board.setCastlingRights(flags >>> CASTLING_SHIFT);
+        board.setEnPassantSquare(enPassant);
+        ChessGame game = new ChessGame(board,
+                (flags & BLACK_TO_MOVE) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE);
+        game.setGameOver((flags & GAME_OVER) != 0);
+        game.setHalfmoveClock(bytes[34] & 0xFF);
+        game.setPlyCount((bytes[35] & 0xFF) << 8 | (bytes[36] & 0xFF));
+        return game;
+    }
+}
@@ -0,0 +1,68 @@
+package chess;
+
+import java.util.ConcurrentModificationException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Generates a team's legal moves lazily, one piece at a time, so a stream that
+ * stops early never pays for the pieces it did not reach.
+ * <p>
+ * The board must not change while the moves are consumed; if it does, the next
+ * advance throws {@link ConcurrentModificationException}.
+ */
+final class LegalMoveSpliterator implements Spliterator<ChessMove> {
+
+    private final ChessBoard board;
+    private final ChessGame.TeamColor team;
+    private long modCount;
+    private final MoveList moves = new MoveList();
+    private long remaining;
+    private int next;
+
+    LegalMoveSpliterator(ChessBoard board, ChessGame.TeamColor team) {
+        this.board = board;
+        this.team = team;
+        this.modCount = board.modCount();
+        this.remaining = board.pieces(team);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super ChessMove> action) {
+        if (board.modCount() != modCount) {
+            throw new ConcurrentModificationException("Board changed while its moves were being read");
+        }
+        while (next == moves.size()) {
+            if (remaining == 0) {
+                return false;
+            }
+            long piece = remaining & -remaining;
+            remaining ^= piece;
+            MoveGenerator.generateLegal(board, team, piece, moves);
+            // the fallback for boards without one king makes and unmakes moves
+            modCount = board.modCount();
+            next = 0;
+        }
+        action.accept(PackedMove.toChessMove(moves.get(next++)));
+        return true;
+    }
+
+    /**
+     * @return null; generating on a board without exactly one king makes and
+     * unmakes moves, so the board cannot be shared between threads
+     */
+    @Override
+    public Spliterator<ChessMove> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | NONNULL;
+    }
+}
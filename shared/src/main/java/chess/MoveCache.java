@@ -0,0 +1,171 @@
+package chess;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe cache of the legal moves and status of positions,
+ * keyed by the position's Zobrist key with the team to move folded in.
+ * <p>
+ * The table is direct-mapped: each key has exactly one slot, and storing a
+ * position replaces whatever was there. Entries are immutable, so readers never
+ * lock and a racing write can only cost a recomputation. A lookup compares the
+ * full 64-bit key, so a slot holding another position is a miss.
+ * <p>
+ * {@link #shared()} is used by every {@link ChessGame} in the JVM. Its size is
+ * read from the {@code chess.moveCache.entries} system property, and defaults
+ * to {@value #DEFAULT_ENTRIES} entries.
+ */
+public final class MoveCache {
+
+    public static final int DEFAULT_ENTRIES = 1 << 16;
+
+    private static final MoveCache SHARED = new MoveCache(Integer.getInteger("chess.moveCache.entries", DEFAULT_ENTRIES));
+
+    private final AtomicReferenceArray<Entry> table;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param entries the most positions to hold, rounded up to a power of two
+     */
+    public MoveCache(int entries) {
+        if (entries < 1) {
+            throw new IllegalArgumentException("Cache must hold at least one entry");
+        }
+        int capacity = Integer.highestOneBit(Math.min(entries, 1 << 30));
+        if (capacity < entries) {
+            capacity <<= 1;
+        }
+        table = new AtomicReferenceArray<>(capacity);
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return the cache shared by every game in this JVM
+     */
+    public static MoveCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * The legal moves and status of one position for the team to move
+     */
+    static final class Entry {
+        final long key;
+        private final int[] moves;
+        final ChessGame.GameStatus status;
+
+        private Entry(long key, int[] moves, ChessGame.GameStatus status) {
+            this.key = key;
+            this.moves = moves;
+            this.status = status;
+        }
+
+        int size() {
+            return moves.length;
+        }
+
+        int get(int index) {
+            return moves[index];
+        }
+
+        boolean contains(int move) {
+            for (int candidate : moves) {
+                if (candidate == move) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @return the entry for a position, or null if it is not cached
+     */
+    Entry get(long key) {
+        Entry entry = table.get(slot(key));
+        if (entry != null && entry.key == key) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * @return the entry for a position, or null if it is not cached, without
+     * counting a hit or miss; for callers that do not fill the cache on a miss
+     */
+    Entry peek(long key) {
+        Entry entry = table.get(slot(key));
+        return entry != null && entry.key == key ? entry : null;
+    }
+
+    /**
+     * Stores a position's moves, replacing whatever was in its slot.
+     *
+     * @return the stored entry
+     */
+    Entry put(long key, MoveList moves, ChessGame.GameStatus status) {
+        Entry entry = new Entry(key, Arrays.copyOf(moves.moves, moves.size()), status);
+        Entry previous = table.getAndSet(slot(key), entry);
+        if (previous != null && previous.key != key) {
+            evictions.increment();
+        }
+        return entry;
+    }
+
+    private int slot(long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    /**
+     * @return the most positions the cache can hold
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return how many lookups found their position
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return how many lookups did not find their position
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return how many stored positions were replaced by a different position
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Empties the cache and resets its counters
+     */
+    public void clear() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, null);
+        }
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MoveCache{capacity=%d, hits=%d, misses=%d, evictions=%d}",
+                capacity(), hits(), misses(), evictions());
+    }
+}
@@ -0,0 +1,268 @@
+package chess;
+
+/**
+ * Generates legal moves straight from the bitboards.
+ * <p>
+ * Legality is decided up front instead of by trying each move: king moves are
+ * tested against the enemy's attacks with the king lifted off the board, a single
+ * check limits every other piece to capturing the checker or blocking its ray,
+ * and a pinned piece may only move along the line through its king and pinner.
+ * Castling needs the right, an empty path and no attacked square from the king's
+ * start to its end. En passant is tested against the occupancy with both pawns
+ * moved, since it can uncover an attack along the rank the two pawns share.
+ * Boards without exactly one king of the moving color fall back to making each
+ * pseudo-legal move and testing for check.
+ */
+final class MoveGenerator {
+
+    private static final ChessPiece.PieceType[] PROMOTIONS = {
+            ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.ROOK,
+            ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.KNIGHT
+    };
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Replaces the contents of {@code list} with every legal move for a team.
+     *
+     * @param board    the board to generate moves on
+     * @param us       the team to move
+     * @param fromMask only pieces on these squares are considered
+     * @param list     receives the moves
+     */
+    static void generateLegal(ChessBoard board, ChessGame.TeamColor us, long fromMask, MoveList list) {
+        list.setSize(generateLegal(board, us, fromMask, list.moves));
+    }
+
+    /**
+     * Replaces the contents of {@code list} with every move for a team that ignores
+     * whether its own king is left in check, matching {@link ChessPiece#pieceMoves}.
+     */
+    static void generatePseudoLegal(ChessBoard board, ChessGame.TeamColor us, long fromMask, MoveList list) {
+        list.setSize(generatePseudoLegal(board, us, fromMask, list.moves));
+    }
+
+    private static int generateLegal(ChessBoard board, ChessGame.TeamColor us, long fromMask, int[] moves) {
+        int kingSquare = board.kingSquare(us);
+        if (kingSquare == ChessBoard.NO_SQUARE) {
+            int count = generatePseudoLegal(board, us, fromMask, moves);
+            count = addEnPassant(board, us, fromMask, moves, count, -1);
+            return removeSelfChecks(board, us, moves, count);
+        }
+
+        ChessGame.TeamColor them = us.opponent();
+        long kings = 1L << kingSquare;
+        long own = board.pieces(us);
+        long occupied = board.occupied();
+        long checkers = board.attackersTo(kingSquare, them, occupied);
+        int count = 0;
+
+        if ((fromMask & kings) != 0) {
+            long withoutKing = occupied ^ kings;
+            long targets = Bitboards.kingAttacksFrom(kingSquare) & ~own;
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                if (board.attackersTo(to, them, withoutKing) == 0) {
+                    moves[count++] = PackedMove.of(kingSquare, to);
+                }
+                targets &= targets - 1;
+            }
+        }
+        if (Long.bitCount(checkers) > 1) {
+            return count;
+        }
+        if (checkers == 0 && (fromMask & kings) != 0) {
+            count = addCastling(board, us, kingSquare, moves, count);
+        }
+
+        long targetMask = ~own;
+        if (checkers != 0) {
+            targetMask &= checkers | Bitboards.between(kingSquare, Long.numberOfTrailingZeros(checkers));
+        }
+        long pinned = pinnedPieces(board, us, kingSquare);
+        count = addPieceMoves(board, us, fromMask & ~kings, moves, count, targetMask, pinned, kingSquare);
+        return addEnPassant(board, us, fromMask, moves, count, kingSquare);
+    }
+
+    private static int generatePseudoLegal(ChessBoard board, ChessGame.TeamColor us, long fromMask, int[] moves) {
+        long own = board.pieces(us);
+        int count = 0;
+        long kings = board.pieces(us, ChessPiece.PieceType.KING) & fromMask;
+        while (kings != 0) {
+            int from = Long.numberOfTrailingZeros(kings);
+            count = addTargets(moves, count, from, Bitboards.kingAttacksFrom(from) & ~own);
+            kings &= kings - 1;
+        }
+        return addPieceMoves(board, us, fromMask, moves, count, ~own, 0L, 0);
+    }
+
+    private static int removeSelfChecks(ChessBoard board, ChessGame.TeamColor us, int[] moves, int count) {
+        int legal = 0;
+        for (int i = 0; i < count; i++) {
+            int undo = board.makeMove(moves[i]);
+            if (!isAnyKingAttacked(board, us)) {
+                moves[legal++] = moves[i];
+            }
+            board.unmakeMove(moves[i], undo);
+        }
+        return legal;
+    }
+
+    private static boolean isAnyKingAttacked(ChessBoard board, ChessGame.TeamColor us) {
+        for (long kings = board.pieces(us, ChessPiece.PieceType.KING); kings != 0; kings &= kings - 1) {
+            if (board.isSquareAttacked(Long.numberOfTrailingZeros(kings), us.opponent())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return our pieces that are the only piece between our king and an enemy slider
+     */
+    private static long pinnedPieces(ChessBoard board, ChessGame.TeamColor us, int kingSquare) {
+        ChessGame.TeamColor them = us.opponent();
+        long enemy = board.pieces(them);
+        long queens = board.pieces(them, ChessPiece.PieceType.QUEEN);
+        long snipers = (SlidingAttacks.rook(kingSquare, enemy) & (queens | board.pieces(them, ChessPiece.PieceType.ROOK)))
+                | (SlidingAttacks.bishop(kingSquare, enemy) & (queens | board.pieces(them, ChessPiece.PieceType.BISHOP)));
+        long occupied = board.occupied();
+        long pinned = 0L;
+        while (snipers != 0) {
+            long blockers = Bitboards.between(kingSquare, Long.numberOfTrailingZeros(snipers)) & occupied;
+            if (Long.bitCount(blockers) == 1) {
+                pinned |= blockers & board.pieces(us);
+            }
+            snipers &= snipers - 1;
+        }
+        return pinned;
+    }
+
+    private static int addPieceMoves(ChessBoard board, ChessGame.TeamColor us, long fromMask, int[] moves,
+                                     int count, long targetMask, long pinned, int kingSquare) {
+        long occupied = board.occupied();
+
+        long knights = board.pieces(us, ChessPiece.PieceType.KNIGHT) & fromMask & ~pinned;
+        while (knights != 0) {
+            int from = Long.numberOfTrailingZeros(knights);
+            count = addTargets(moves, count, from, Bitboards.knightAttacksFrom(from) & targetMask);
+            knights &= knights - 1;
+        }
+
+        long queens = board.pieces(us, ChessPiece.PieceType.QUEEN);
+        long diagonal = (queens | board.pieces(us, ChessPiece.PieceType.BISHOP)) & fromMask;
+        while (diagonal != 0) {
+            int from = Long.numberOfTrailingZeros(diagonal);
+            long targets = SlidingAttacks.bishop(from, occupied) & targetMask;
+            count = addTargets(moves, count, from, pinFilter(targets, from, pinned, kingSquare));
+            diagonal &= diagonal - 1;
+        }
+        long orthogonal = (queens | board.pieces(us, ChessPiece.PieceType.ROOK)) & fromMask;
+        while (orthogonal != 0) {
+            int from = Long.numberOfTrailingZeros(orthogonal);
+            long targets = SlidingAttacks.rook(from, occupied) & targetMask;
+            count = addTargets(moves, count, from, pinFilter(targets, from, pinned, kingSquare));
+            orthogonal &= orthogonal - 1;
+        }
+
+        return addPawnMoves(board, us, fromMask, moves, count, targetMask, pinned, kingSquare);
+    }
+
+    private static int addPawnMoves(ChessBoard board, ChessGame.TeamColor us, long fromMask, int[] moves,
+                                    int count, long targetMask, long pinned, int kingSquare) {
+        long empty = ~board.occupied();
+        long enemy = board.pieces(us.opponent());
+        boolean white = us == ChessGame.TeamColor.WHITE;
+        long promotionRank = white ? Bitboards.RANK_8 : Bitboards.RANK_1;
+
+        long pawns = board.pieces(us, ChessPiece.PieceType.PAWN) & fromMask;
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            long pawn = 1L << from;
+            long single = (white ? pawn << 8 : pawn >>> 8) & empty;
+            long twice = white ? ((single & Bitboards.RANK_3) << 8) & empty : ((single & Bitboards.RANK_6) >>> 8) & empty;
+            long captures = Bitboards.pawnAttacksFrom(from, us) & enemy;
+            long targets = pinFilter((single | twice | captures) & targetMask, from, pinned, kingSquare);
+
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                if (((1L << to) & promotionRank) != 0) {
+                    for (ChessPiece.PieceType promotion : PROMOTIONS) {
+                        moves[count++] = PackedMove.of(from, to, promotion);
+                    }
+                } else {
+                    moves[count++] = PackedMove.of(from, to);
+                }
+                targets &= targets - 1;
+            }
+            pawns &= pawns - 1;
+        }
+        return count;
+    }
+
+    private static int addCastling(ChessBoard board, ChessGame.TeamColor us, int kingSquare, int[] moves, int count) {
+        boolean white = us == ChessGame.TeamColor.WHITE;
+        int home = white ? 4 : 60;
+        int rights = board.castlingRights() & (white
+                ? ChessBoard.WHITE_KINGSIDE | ChessBoard.WHITE_QUEENSIDE
+                : ChessBoard.BLACK_KINGSIDE | ChessBoard.BLACK_QUEENSIDE);
+        if (rights == 0 || kingSquare != home) {
+            return count;
+        }
+        ChessGame.TeamColor them = us.opponent();
+        long rooks = board.pieces(us, ChessPiece.PieceType.ROOK);
+        long occupied = board.occupied();
+        if ((rights & (ChessBoard.WHITE_KINGSIDE | ChessBoard.BLACK_KINGSIDE)) != 0
+                && (rooks & (1L << (home + 3))) != 0
+                && (Bitboards.between(home, home + 3) & occupied) == 0
+                && !board.isSquareAttacked(home + 1, them) && !board.isSquareAttacked(home + 2, them)) {
+            moves[count++] = PackedMove.of(home, home + 2);
+        }
+        if ((rights & (ChessBoard.WHITE_QUEENSIDE | ChessBoard.BLACK_QUEENSIDE)) != 0
+                && (rooks & (1L << (home - 4))) != 0
+                && (Bitboards.between(home, home - 4) & occupied) == 0
+                && !board.isSquareAttacked(home - 1, them) && !board.isSquareAttacked(home - 2, them)) {
+            moves[count++] = PackedMove.of(home, home - 2);
+        }
+        return count;
+    }
+
+    /**
+     * Adds en passant captures. With a king square they are kept only if the king
+     * is safe once the capturing pawn, the captured pawn and the target square
+     * have all changed; with -1 every capture is added.
+     */
+    private static int addEnPassant(ChessBoard board, ChessGame.TeamColor us, long fromMask, int[] moves,
+                                    int count, int kingSquare) {
+        int target = board.enPassantSquare();
+        long targetBit = 1L << target;
+        if (target == 0 || (targetBit & (us == ChessGame.TeamColor.WHITE ? Bitboards.RANK_6 : Bitboards.RANK_3)) == 0) {
+            return count;
+        }
+        ChessGame.TeamColor them = us.opponent();
+        long pawns = Bitboards.pawnAttacksFrom(target, them) & board.pieces(us, ChessPiece.PieceType.PAWN) & fromMask;
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            long capturedBit = 1L << ((from & 56) | (target & 7));
+            long after = (board.occupied() ^ (1L << from) ^ capturedBit) | targetBit;
+            if (kingSquare < 0 || (board.attackersTo(kingSquare, them, after) & ~capturedBit) == 0) {
+                moves[count++] = PackedMove.of(from, target);
+            }
+            pawns &= pawns - 1;
+        }
+        return count;
+    }
+
+    private static long pinFilter(long targets, int from, long pinned, int kingSquare) {
+        return (pinned & (1L << from)) == 0 ? targets : targets & Bitboards.line(kingSquare, from);
+    }
+
+    private static int addTargets(int[] moves, int count, int from, long targets) {
+        while (targets != 0) {
+            moves[count++] = PackedMove.of(from, Long.numberOfTrailingZeros(targets));
+            targets &= targets - 1;
+        }
+        return count;
+    }
+}
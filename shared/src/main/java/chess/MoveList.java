@@ -0,0 +1,127 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * A reusable buffer of moves encoded as {@link PackedMove} ints, filled by the
+ * primitive move generation methods such as {@link ChessGame#legalMoves(MoveList)}.
+ * Refilling a list overwrites its previous contents, so one list can serve any
+ * number of calls without allocating.
+ * <p>
+ * {@link #borrow()} hands out lists from a small per-thread pool. Borrowed lists
+ * must be closed in the reverse order they were borrowed, which try-with-resources
+ * does naturally:
+ * <pre>{@code
+ * try (MoveList moves = MoveList.borrow()) {
+ *     game.legalMoves(moves);
+ *     ...
+ * }
+ * }</pre>
+ */
+public final class MoveList implements AutoCloseable {
+
+    /**
+     * More than the most legal moves any chess position can have (218).
+     */
+    public static final int CAPACITY = 256;
+
+    private static final ThreadLocal<Pool> POOL = ThreadLocal.withInitial(Pool::new);
+
+    final int[] moves = new int[CAPACITY];
+    private int size;
+    private Pool owner;
+
+    public MoveList() {
+    }
+
+    /**
+     * @return a list from the calling thread's pool; close it to give it back
+     */
+    public static MoveList borrow() {
+        return POOL.get().borrow();
+    }
+
+    /**
+     * @return how many moves are in the list
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index which move to get, from 0 to {@link #size()} - 1
+     * @return the {@link PackedMove} at that index
+     */
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return moves[index];
+    }
+
+    /**
+     * @return True if the list holds the given {@link PackedMove}
+     */
+    public boolean contains(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    void setSize(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Returns a borrowed list to its pool. Does nothing for lists created with
+     * {@code new}.
+     */
+    @Override
+    public void close() {
+        if (owner != null) {
+            owner.release(this);
+        }
+    }
+
+    /**
+     * A per-thread stack of lists, deep enough for a recursive search to borrow
+     * one list per ply.
+     */
+    private static final class Pool {
+        private MoveList[] lists = new MoveList[16];
+        private int borrowed;
+
+        MoveList borrow() {
+            if (borrowed == lists.length) {
+                lists = Arrays.copyOf(lists, borrowed * 2);
+            }
+            MoveList list = lists[borrowed];
+            if (list == null) {
+                list = new MoveList();
+                list.owner = this;
+                lists[borrowed] = list;
+            }
+            borrowed++;
+            list.clear();
+            return list;
+        }
+
+        void release(MoveList list) {
+            if (borrowed == 0 || lists[borrowed - 1] != list) {
+                throw new IllegalStateException("Move lists must be closed in the reverse order they were borrowed");
+            }
+            borrowed--;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package chess;
+
+/**
+ * Receives moves one at a time as they are generated, and can stop generation
+ * early by returning false. Lets callers that only need to find, count or test
+ * moves skip building a collection of them.
+ *
+ * @see ChessGame#visitLegalMoves(MoveVisitor)
+ */
+@FunctionalInterface
+public interface MoveVisitor {
+
+    /**
+     * @param move a {@link PackedMove}
+     * @return True to keep receiving moves, false to stop
+     */
+    boolean visit(int move);
+}
@@ -0,0 +1,122 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only opening book, memory-mapped from a file written by
+ * {@link OpeningBookBuilder}.
+ * <p>
+ * The file follows the Polyglot layout: a run of 16-byte big-endian entries
+ * sorted by position key, each holding the key (8 bytes), a move (2 bytes), a
+ * weight (2 bytes) and 4 reserved bytes. Unlike Polyglot, keys are
+ * {@link ChessGame#getPositionKey()} and moves are {@link PackedMove}s, so a book
+ * only works with this engine. A position with several moves has one entry per
+ * move.
+ * <p>
+ * Lookups binary-search the mapped file directly, so they allocate nothing and
+ * the operating system keeps the pages shared between readers. A book is safe to
+ * use from any number of threads.
+ */
+public final class OpeningBook {
+
+    public static final int ENTRY_BYTES = 16;
+
+    public static final OpeningBook EMPTY = new OpeningBook(ByteBuffer.allocate(0));
+
+    private final ByteBuffer entries;
+    private final int size;
+
+    private OpeningBook(ByteBuffer entries) {
+        this.entries = entries;
+        this.size = entries.capacity() / ENTRY_BYTES;
+    }
+
+    /**
+     * Maps a book file into memory. The file may be replaced afterward without
+     * affecting this book, as long as it is replaced by renaming a new file over it.
+     *
+     * @param file the book to open
+     * @return the book
+     * @throws IOException if the file cannot be read or is not a whole number of entries
+     */
+    public static OpeningBook open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length % ENTRY_BYTES != 0 || length > Integer.MAX_VALUE) {
+                throw new IOException("Not an opening book: " + file);
+            }
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, length));
+        }
+    }
+
+    /**
+     * @return how many entries the book holds
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the book's most played move for a position.
+     *
+     * @param key a {@link ChessGame#getPositionKey() position key}
+     * @return the {@link PackedMove} with the highest weight, or 0 if the position
+     * is not in the book
+     */
+    public int probe(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (key(mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int best = 0;
+        int bestWeight = -1;
+        for (int i = low; i < size && key(i) == key; i++) {
+            int weight = weight(i);
+            if (weight > bestWeight) {
+                best = move(i);
+                bestWeight = weight;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the book's move for a game, checking that it is legal so a key
+     * collision can never produce a bad move.
+     *
+     * @param game the game to look up
+     * @return the book move, or null if the position is not in the book
+     */
+    public ChessMove lookup(ChessGame game) {
+        int move = probe(game.getPositionKey());
+        if (move == 0) {
+            return null;
+        }
+        try (MoveList legal = MoveList.borrow()) {
+            game.legalMoves(legal);
+            return legal.contains(move) ? ChessMove.of(move) : null;
+        }
+    }
+
+    private long key(int index) {
+        return entries.getLong(index * ENTRY_BYTES);
+    }
+
+    private int move(int index) {
+        return entries.getShort(index * ENTRY_BYTES + 8) & 0xFFFF;
+    }
+
+    private int weight(int index) {
+        return entries.getShort(index * ENTRY_BYTES + 10) & 0xFFFF;
+    }
+}
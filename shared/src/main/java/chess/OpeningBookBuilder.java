@@ -0,0 +1,101 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds an {@link OpeningBook} from played games. Every position in the first
+ * {@code maxPly} plies of a game adds one to the weight of the move played from
+ * it, so the book's move for a position is the one played there most often.
+ */
+public final class OpeningBookBuilder {
+
+    private static final int MAX_WEIGHT = 0xFFFF;
+
+    private record Entry(long key, int move) {
+    }
+
+    private final int maxPly;
+    private final Map<Entry, Integer> weights = new HashMap<>();
+
+    /**
+     * @param maxPly how many plies from the start of each game to include
+     */
+    public OpeningBookBuilder(int maxPly) {
+        this.maxPly = maxPly;
+    }
+
+    /**
+     * Adds a game that began from the standard starting position. Replay stops at
+     * the first illegal move.
+     *
+     * @param moves the game's moves, oldest first
+     */
+    public void addGame(List<ChessMove> moves) {
+        ChessGame game = new ChessGame();
+        for (int ply = 0; ply < Math.min(maxPly, moves.size()); ply++) {
+            ChessMove move = moves.get(ply);
+            long key = game.getPositionKey();
+            try {
+                game.makeMove(move);
+            } catch (InvalidMoveException e) {
+                return;
+            }
+            weights.merge(new Entry(key, PackedMove.fromChessMove(move)), 1, (a, b) -> Math.min(a + b, MAX_WEIGHT));
+        }
+    }
+
+    /**
+     * @return how many entries the book will have
+     */
+    public int size() {
+        return weights.size();
+    }
+
+    /**
+     * Writes the book. The file is written beside {@code file} and renamed over
+     * it, so a reader never maps a half-written book.
+     *
+     * @param file where to write the book
+     */
+    public void write(Path file) throws IOException {
+        List<Map.Entry<Entry, Integer>> sorted = new ArrayList<>(weights.entrySet());
+        sorted.sort((a, b) -> {
+            int byKey = Long.compare(a.getKey().key(), b.getKey().key());
+            return byKey != 0 ? byKey : Integer.compare(a.getKey().move(), b.getKey().move());
+        });
+
+        ByteBuffer buffer = ByteBuffer.allocate(sorted.size() * OpeningBook.ENTRY_BYTES);
+        for (Map.Entry<Entry, Integer> entry : sorted) {
+            buffer.putLong(entry.getKey().key());
+            buffer.putShort((short) entry.getKey().move());
+            buffer.putShort((short) entry.getValue().intValue());
+            buffer.putInt(0);
+        }
+        buffer.flip();
+
+        Path absolute = file.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package chess;
+
+/**
+ * Encodes a move as an {@code int} so the move generator and make/unmake can work
+ * without allocating {@link ChessMove} and {@link ChessPosition} objects.
+ * <p>
+ * Bits 0-5 hold the start square, bits 6-11 the end square and bits 12-14 the
+ * promotion piece ({@link ChessPiece.PieceType#ordinal()} + 1, or 0 for none).
+ * Squares are numbered from 0 for row 1, column 1 to 63 for row 8, column 8, so
+ * a square's row is {@code square / 8 + 1} and its column {@code square % 8 + 1}.
+ */
+public final class PackedMove {
+
+    private static final int SQUARE_MASK = 0x3F;
+    private static final int PROMOTION_SHIFT = 12;
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private PackedMove() {
+    }
+
+    public static int of(int from, int to) {
+        return from | (to << 6);
+    }
+
+    public static int of(int from, int to, ChessPiece.PieceType promotion) {
+        int move = of(from, to);
+        return promotion == null ? move : move | ((promotion.ordinal() + 1) << PROMOTION_SHIFT);
+    }
+
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & SQUARE_MASK;
+    }
+
+    /**
+     * @return the ordinal of the promotion piece type, or -1 if the move does not promote
+     */
+    public static int promotion(int move) {
+        return ((move >>> PROMOTION_SHIFT) & 0x7) - 1;
+    }
+
+    /**
+     * @return the promotion piece type, or null if the move does not promote
+     */
+    public static ChessPiece.PieceType promotionType(int move) {
+        int promotion = promotion(move);
+        return promotion < 0 ? null : TYPES[promotion];
+    }
+
+    public static int fromChessMove(ChessMove move) {
+        return fromChessMove(move.getStartPosition(), move.getEndPosition(), move.getPromotionPiece());
+    }
+
+    static int fromChessMove(ChessPosition start, ChessPosition end, ChessPiece.PieceType promotion) {
+        return of(ChessBoard.square(start.getRow(), start.getColumn()),
+                ChessBoard.square(end.getRow(), end.getColumn()), promotion);
+    }
+
+    /**
+     * @return the shared {@link ChessMove} for a packed move
+     */
+    public static ChessMove toChessMove(int move) {
+        return ChessMove.of(move);
+    }
+}
@@ -0,0 +1,156 @@
+package chess;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the leaf nodes of the legal move tree ("perft") to check move generation
+ * against published reference counts and to measure its speed.
+ * <p>
+ * Run {@code java -cp shared.jar chess.Perft} to bench every reference position,
+ * or {@code java -cp shared.jar chess.Perft <depth> [position]} to print a
+ * per-move breakdown ("divide") of one position, where the position is a
+ * reference name or a FEN string.
+ */
+public final class Perft {
+
+    /**
+     * A position with known node counts, where {@code nodes[d - 1]} is the count at depth {@code d}
+     */
+    record Position(String name, String fen, long... nodes) {
+    }
+
+    static final List<Position> REFERENCE_POSITIONS = List.of(
+            new Position("start", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                    20, 400, 8_902, 197_281),
+            new Position("kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                    48, 2_039, 97_862, 4_085_603),
+            new Position("endgame", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                    14, 191, 2_812, 43_238, 674_624),
+            new Position("promotions", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                    6, 264, 9_467, 422_333),
+            new Position("talkchess", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                    44, 1_486, 62_379, 2_103_487),
+            new Position("middlegame", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                    46, 2_079, 89_890)
+    );
+
+    private Perft() {
+    }
+
+    /**
+     * @return the number of leaf nodes {@code depth} plies below the current position
+     */
+    public static long perft(ChessGame game, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        try (MoveList moves = MoveList.borrow()) {
+            game.legalMoves(moves);
+            if (depth == 1) {
+                return moves.size();
+            }
+            long nodes = 0;
+            for (int i = 0; i < moves.size(); i++) {
+                game.applyMove(moves.get(i));
+                nodes += perft(game, depth - 1);
+                game.undoMove();
+            }
+            return nodes;
+        }
+    }
+
+    /**
+     * Counts leaf nodes using only {@link ChessPiece#pieceMoves}, keeping a move if it
+     * does not leave the mover in check. Much slower than {@link #perft}, but it shares
+     * none of the legal generator's check, pin and evasion logic, so the two can check
+     * each other. A piece alone knows nothing of castling or en passant, so the
+     * counts only agree on trees where neither comes up.
+     */
+    public static long perftByPiece(ChessGame game, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        ChessBoard board = game.getBoard();
+        ChessGame.TeamColor mover = game.getTeamTurn();
+        long nodes = 0;
+        for (long pieces = board.pieces(mover); pieces != 0; pieces &= pieces - 1) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            ChessPosition position = ChessPosition.ofSquare(square);
+            for (ChessMove move : board.getPiece(position).pieceMoves(board, position)) {
+                game.applyMove(PackedMove.fromChessMove(move));
+                if (!game.isInCheck(mover)) {
+                    nodes += perftByPiece(game, depth - 1);
+                }
+                game.undoMove();
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * @return the leaf count below each legal move, in generation order, keyed by
+     * the move in coordinate notation
+     */
+    public static Map<String, Long> divide(ChessGame game, int depth) {
+        MoveList moves = new MoveList();
+        game.legalMoves(moves);
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < moves.size(); i++) {
+            game.applyMove(moves.get(i));
+            counts.put(PackedMove.toChessMove(moves.get(i)).toString(), perft(game, depth - 1));
+            game.undoMove();
+        }
+        return counts;
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            bench();
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        String fen = args.length > 1 ? String.join(" ", List.of(args).subList(1, args.length)) : "start";
+        for (Position position : REFERENCE_POSITIONS) {
+            if (position.name().equals(fen)) {
+                fen = position.fen();
+            }
+        }
+        ChessGame game = Fen.decode(fen);
+        long start = System.nanoTime();
+        long total = 0;
+        for (Map.Entry<String, Long> entry : divide(game, depth).entrySet()) {
+            System.out.println(entry.getKey() + ": " + entry.getValue());
+            total += entry.getValue();
+        }
+        report("\nNodes searched", total, System.nanoTime() - start);
+    }
+
+    private static void bench() {
+        // one untimed pass so the JIT has compiled the generator before timing starts
+        for (Position position : REFERENCE_POSITIONS) {
+            perft(Fen.decode(position.fen()), position.nodes().length);
+        }
+        long totalNodes = 0;
+        long totalNanos = 0;
+        for (Position position : REFERENCE_POSITIONS) {
+            int depth = position.nodes().length;
+            ChessGame game = Fen.decode(position.fen());
+            long start = System.nanoTime();
+            long nodes = perft(game, depth);
+            long nanos = System.nanoTime() - start;
+            long expected = position.nodes()[depth - 1];
+            String status = nodes == expected ? "ok" : "MISMATCH, expected " + expected;
+            report(String.format("%-12s depth %d (%s)", position.name(), depth, status), nodes, nanos);
+            totalNodes += nodes;
+            totalNanos += nanos;
+        }
+        report("total", totalNodes, totalNanos);
+    }
+
+    private static void report(String label, long nodes, long nanos) {
+        System.out.printf("%s: %,d nodes in %.3f s, %,.0f nodes/s%n",
+                label, nodes, nanos / 1e9, nodes / Math.max(nanos / 1e9, 1e-9));
+    }
+}
@@ -0,0 +1,133 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * The positions a game has passed through, for spotting repetitions.
+ * <p>
+ * Position keys are kept on a stack in the order they were reached, and each
+ * distinct key is also counted in a small open-addressed hash table. Pushing,
+ * popping and counting a key are all O(1) on average, however long the game.
+ * Nothing is ever dropped after a capture or pawn move: no earlier position can
+ * come back once one happens, so old keys simply never match again.
+ */
+final class PositionHistory {
+
+    private long[] stack = new long[64];
+    private int size;
+
+    private long[] keys = new long[64];
+    private int[] counts = new int[64];
+    private int mask = 63;
+    private int distinct;
+
+    void push(long key) {
+        if (size == stack.length) {
+            stack = Arrays.copyOf(stack, size * 2);
+        }
+        stack[size++] = key;
+        int slot = (int) key & mask;
+        while (counts[slot] != 0) {
+            if (keys[slot] == key) {
+                counts[slot]++;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        counts[slot] = 1;
+        if (++distinct * 2 > counts.length) {
+            grow();
+        }
+    }
+
+    /**
+     * Removes the most recently pushed key
+     */
+    void pop() {
+        long key = stack[--size];
+        int slot = find(key);
+        if (--counts[slot] == 0) {
+            distinct--;
+            remove(slot);
+        }
+    }
+
+    /**
+     * @return how many times a key is on the stack
+     */
+    int count(long key) {
+        int slot = find(key);
+        return slot < 0 ? 0 : counts[slot];
+    }
+
+    /**
+     * @return an independent history holding the same keys
+     */
+    PositionHistory copy() {
+        PositionHistory copy = new PositionHistory();
+        copy.stack = Arrays.copyOf(stack, stack.length);
+        copy.size = size;
+        copy.keys = Arrays.copyOf(keys, keys.length);
+        copy.counts = Arrays.copyOf(counts, counts.length);
+        copy.mask = mask;
+        copy.distinct = distinct;
+        return copy;
+    }
+
+    void clear() {
+        size = 0;
+        distinct = 0;
+        Arrays.fill(counts, 0);
+    }
+
+    private int find(long key) {
+        int slot = (int) key & mask;
+        while (counts[slot] != 0) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Empties a slot, shifting later entries of the same probe run back so every
+     * key stays reachable from its home slot
+     */
+    private void remove(int hole) {
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (counts[slot] == 0) {
+                return;
+            }
+            int home = (int) keys[slot] & mask;
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                keys[hole] = keys[slot];
+                counts[hole] = counts[slot];
+                counts[slot] = 0;
+                hole = slot;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldCounts.length * 2];
+        mask = counts.length - 1;
+        for (int i = 0; i < oldCounts.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = (int) oldKeys[i] & mask;
+                while (counts[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package chess;
+
+/**
+ * When an {@link Engine} search should stop. The search stops at whichever limit
+ * it reaches first, but always finishes at least one ply so it has a move.
+ *
+ * @param depth  the deepest iteration to search, in plies
+ * @param nodes  the most positions to visit
+ * @param millis the most wall-clock time to spend, in milliseconds
+ */
+public record SearchLimits(int depth, long nodes, long millis) {
+
+    public SearchLimits {
+        if (depth < 1 || nodes < 1 || millis < 1) {
+            throw new IllegalArgumentException("Search limits must be positive");
+        }
+        depth = Math.min(depth, Engine.MAX_PLY - 1);
+    }
+
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(depth, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    public static SearchLimits nodes(long nodes) {
+        return new SearchLimits(Engine.MAX_PLY, nodes, Long.MAX_VALUE);
+    }
+
+    public static SearchLimits time(long millis) {
+        return new SearchLimits(Engine.MAX_PLY, Long.MAX_VALUE, millis);
+    }
+}
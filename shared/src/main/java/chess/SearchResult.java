@@ -0,0 +1,37 @@
+package chess;
+
+import java.util.List;
+
+/**
+ * The outcome of an {@link Engine} search
+ *
+ * @param bestMove            the move to play, or null if the side to move has none
+ * @param score               the score in centipawns from the side to move's point
+ *                            of view; see {@link #isMate()}
+ * @param depth               the deepest iteration that finished
+ * @param nodes               how many positions were visited
+ * @param nanos               how long the search took
+ * @param principalVariation  the line the search expects, starting with bestMove
+ */
+public record SearchResult(ChessMove bestMove, int score, int depth, long nodes, long nanos,
+                           List<ChessMove> principalVariation) {
+
+    /**
+     * @return True if the score is a forced mate, for either side
+     */
+    public boolean isMate() {
+        return Math.abs(score) >= Engine.MATE_BOUND;
+    }
+
+    /**
+     * @return the number of moves until mate, negative when the side to move is
+     * being mated, or 0 if the score is not a mate
+     */
+    public int mateIn() {
+        if (!isMate()) {
+            return 0;
+        }
+        int plies = Engine.MATE - Math.abs(score);
+        return score > 0 ? (plies + 1) / 2 : -(plies + 1) / 2;
+    }
+}
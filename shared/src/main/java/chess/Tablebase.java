@@ -0,0 +1,220 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The distance to mate of every position with one set of pieces, such as a king
+ * and queen against a lone king. Tables are written by {@link TablebaseGenerator}
+ * and memory-mapped by {@link #open}.
+ * <p>
+ * A table is named by its material: the white pieces, then the black ones, each
+ * starting with the king, using the letters K, Q, R, B, N and P, so {@code KQK}
+ * or {@code KPK}. The name also fixes the order of the pieces in an index. With
+ * {@code n} pieces the file is {@code 2 * 64^n} bytes, one per position, indexed
+ * by the team to move (white first) and then each piece's square in name order,
+ * most significant first. A byte {@code d > 0} means the side to move mates in
+ * {@code d} plies, {@code -(d + 1)} means it is mated in {@code d} plies, and 0
+ * means a draw or a position that cannot arise.
+ * <p>
+ * Positions are stored as they are, without folding mirror images together, so
+ * a lookup is a single index calculation and one byte read. A table is safe to
+ * use from any number of threads.
+ */
+public final class Tablebase {
+
+    public static final String EXTENSION = ".tb";
+
+    /**
+     * The longest mate a table can record, in plies
+     */
+    public static final int MAX_PLIES = 126;
+
+    private static final String LETTERS = "KQBNRP";
+
+    private final String material;
+    private final int[] pieces;
+    private final int[] repeats;
+    private final ByteBuffer values;
+
+    Tablebase(String material, ByteBuffer values) {
+        this.material = material;
+        this.pieces = parse(material);
+        this.repeats = new int[pieces.length];
+        for (int slot = 0; slot < pieces.length; slot++) {
+            for (int earlier = 0; earlier < slot; earlier++) {
+                if (pieces[earlier] == pieces[slot]) {
+                    repeats[slot]++;
+                }
+            }
+        }
+        if (values.capacity() != positions(pieces.length)) {
+            throw new IllegalArgumentException("A " + material + " table holds " + positions(pieces.length)
+                    + " positions, not " + values.capacity());
+        }
+        this.values = values;
+    }
+
+    /**
+     * Maps a table file into memory. Its material is taken from the file name.
+     *
+     * @param file the table to open, such as {@code KQK.tb}
+     * @return the table
+     * @throws IOException if the file cannot be read or is the wrong size for its material
+     */
+    public static Tablebase open(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(EXTENSION)) {
+            throw new IOException("Not a tablebase: " + file);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new Tablebase(name.substring(0, name.length() - EXTENSION.length()),
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Not a tablebase: " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the table's material, such as {@code KQK}
+     */
+    public String material() {
+        return material;
+    }
+
+    /**
+     * @return how many pieces, kings included, the table covers
+     */
+    public int pieceCount() {
+        return pieces.length;
+    }
+
+    /**
+     * Writes the table as {@code <material>.tb} in a directory. The file is written
+     * beside its final name and renamed over it, so a reader never maps a
+     * half-written table.
+     *
+     * @return the file written
+     */
+    public Path write(Path directory) throws IOException {
+        Path file = directory.toAbsolutePath().resolve(material + EXTENSION);
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = values.duplicate().clear();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return file;
+    }
+
+    /**
+     * @return the stored byte for a position index, as described above
+     */
+    int value(int index) {
+        return values.get(index);
+    }
+
+    /**
+     * @return the {@link ChessBoard} piece index of each slot, in name order
+     */
+    int[] pieces() {
+        return pieces;
+    }
+
+    /**
+     * Finds a position's index. The board must hold exactly this table's
+     * material, with colors swapped and the board turned over when
+     * {@code flipped} is set.
+     */
+    int index(ChessBoard board, ChessGame.TeamColor toMove, boolean flipped) {
+        int index = toMove == ChessGame.TeamColor.WHITE ^ flipped ? 0 : 1;
+        for (int slot = 0; slot < pieces.length; slot++) {
+            long squares = board.pieces(flipped ? swapColor(pieces[slot]) : pieces[slot]);
+            // identical pieces take their squares in ascending order
+            for (int skip = 0; skip < repeats[slot]; skip++) {
+                squares &= squares - 1;
+            }
+            int square = Long.numberOfTrailingZeros(squares);
+            index = (index << 6) | (flipped ? square ^ 56 : square);
+        }
+        return index;
+    }
+
+    /**
+     * @return a key that is the same for every arrangement of the same pieces,
+     * kings aside, with colors swapped when {@code flipped} is set
+     */
+    static long materialKey(int[] pieces, boolean flipped) {
+        long key = 0;
+        for (int piece : pieces) {
+            if (piece % 6 != ChessPiece.PieceType.KING.ordinal()) {
+                key += 1L << (4 * (flipped ? swapColor(piece) : piece));
+            }
+        }
+        return key;
+    }
+
+    static int swapColor(int piece) {
+        return (piece + 6) % 12;
+    }
+
+    /**
+     * @return the number of positions in a table of {@code pieceCount} pieces
+     */
+    static int positions(int pieceCount) {
+        return 2 << (6 * pieceCount);
+    }
+
+    /**
+     * @return the {@link ChessBoard} piece index of each piece in a material name
+     * @throws IllegalArgumentException if the name is not two kings with at most
+     *                                  {@value TablebaseGenerator#MAX_PIECES} pieces in all
+     */
+    static int[] parse(String material) {
+        int blackKing = material.indexOf('K', 1);
+        if (!material.startsWith("K") || blackKing < 0 || material.indexOf('K', blackKing + 1) >= 0
+                || material.length() > TablebaseGenerator.MAX_PIECES) {
+            throw new IllegalArgumentException("Not a tablebase material: " + material);
+        }
+        int[] pieces = new int[material.length()];
+        for (int i = 0; i < pieces.length; i++) {
+            int type = LETTERS.indexOf(material.charAt(i));
+            if (type < 0) {
+                throw new IllegalArgumentException("Not a tablebase material: " + material);
+            }
+            pieces[i] = (i < blackKing ? 0 : 6) + type;
+        }
+        return pieces;
+    }
+
+    /**
+     * @return the material name of a set of {@link ChessBoard} piece indexes,
+     * white first, each side ordered king, queen, rook, bishop, knight, pawn
+     */
+    static String name(int[] pieces) {
+        StringBuilder name = new StringBuilder();
+        for (int color = 0; color < 2; color++) {
+            for (char letter : "KQRBNP".toCharArray()) {
+                for (int piece : pieces) {
+                    if (piece == color * 6 + LETTERS.indexOf(letter)) {
+                        name.append(letter);
+                    }
+                }
+            }
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,501 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Solves small endgames by retrograde analysis and builds their {@link Tablebase}s.
+ * <p>
+ * Generation first visits every position once, generating its moves: positions
+ * with no moves are mates or stalemates, and moves that capture or promote leave
+ * the table, so their value is read from the smaller table they lead into, which
+ * is generated first if needed. Then it works backward from the mates one ply at
+ * a time. Taking back a move from a lost position gives a won one, and a
+ * position is lost once every one of its moves has been found to lead to a won
+ * one. Because plies are processed in order, every distance found is the
+ * shortest win or the longest loss. Whatever is left unsolved at the end is a draw.
+ * <p>
+ * Run {@code java -cp shared.jar chess.TablebaseGenerator <directory> <material>...},
+ * for example {@code ... tablebases KQK KRK KPK KBNK}, to write tables into a
+ * directory. Tables already in the directory are reused rather than regenerated.
+ * Four-piece tables take 32 MiB each and tens of seconds to build.
+ */
+public final class TablebaseGenerator {
+
+    public static final int MAX_PIECES = 4;
+
+    private static final int KING = ChessPiece.PieceType.KING.ordinal();
+    private static final int QUEEN = ChessPiece.PieceType.QUEEN.ordinal();
+    private static final int BISHOP = ChessPiece.PieceType.BISHOP.ordinal();
+    private static final int KNIGHT = ChessPiece.PieceType.KNIGHT.ordinal();
+    private static final int ROOK = ChessPiece.PieceType.ROOK.ordinal();
+    private static final int PAWN = ChessPiece.PieceType.PAWN.ordinal();
+    private static final int[] PROMOTIONS = {QUEEN, ROOK, BISHOP, KNIGHT};
+
+    private static final byte UNSOLVED = 0;
+    private static final byte SOLVED = 1;
+    private static final byte RETRACTED = 2;
+    private static final byte ILLEGAL = 3;
+
+    private Tablebases known;
+
+    public TablebaseGenerator() {
+        this(Tablebases.EMPTY);
+    }
+
+    /**
+     * @param known tables to use rather than regenerate
+     */
+    public TablebaseGenerator(Tablebases known) {
+        this.known = known;
+    }
+
+    /**
+     * @return every table known or generated so far
+     */
+    public Tablebases tablebases() {
+        return known;
+    }
+
+    /**
+     * Generates a table and any smaller tables it leads into that are not known
+     * yet. A table of the same material that is already known is returned as is.
+     *
+     * @param material the table's material, such as {@code KQK}
+     * @return the table
+     * @throws IllegalArgumentException if the material is not a valid table name
+     */
+    public Tablebase generate(String material) {
+        for (Tablebase table : known.tables()) {
+            if (table.material().equals(material)) {
+                return table;
+            }
+        }
+        Tablebase table = new Run(material).solve();
+        known = known.with(table);
+        return table;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TablebaseGenerator <directory> <material>...");
+            System.exit(1);
+        }
+        Path directory = Path.of(args[0]);
+        Files.createDirectories(directory);
+        TablebaseGenerator generator = new TablebaseGenerator(Tablebases.open(directory));
+        for (String material : Arrays.asList(args).subList(1, args.length)) {
+            long start = System.nanoTime();
+            generator.generate(material);
+            System.out.printf("%s: %.1f s%n", material, (System.nanoTime() - start) / 1e9);
+        }
+        for (Tablebase table : generator.tablebases().tables()) {
+            if (!Files.exists(directory.resolve(table.material() + Tablebase.EXTENSION))) {
+                System.out.println("Wrote " + table.write(directory));
+            }
+        }
+    }
+
+    /**
+     * The working state of one table's generation
+     */
+    private final class Run {
+        private final String material;
+        private final int[] pieces;
+        private final int[] weights;
+        private final int positionsPerSide;
+        private final byte[] values;
+        private final byte[] states;
+        private final byte[] unresolvedMoves;
+        /** the longest loss through a move leaving the table, or -1 if such a move draws or wins */
+        private final byte[] exitLosses;
+        private final IntList[] levels = new IntList[Tablebase.MAX_PLIES + 1];
+        private final int[] squares;
+
+        Run(String material) {
+            this.material = material;
+            pieces = Tablebase.parse(material);
+            weights = new int[pieces.length];
+            for (int slot = 0; slot < pieces.length; slot++) {
+                weights[slot] = 1 << (6 * (pieces.length - 1 - slot));
+            }
+            positionsPerSide = 1 << (6 * pieces.length);
+            int positions = Tablebase.positions(pieces.length);
+            values = new byte[positions];
+            states = new byte[positions];
+            unresolvedMoves = new byte[positions];
+            exitLosses = new byte[positions];
+            squares = new int[pieces.length];
+        }
+
+        Tablebase solve() {
+            for (int index = 0; index < values.length; index++) {
+                examine(index);
+            }
+            for (int level = 0; level <= Tablebase.MAX_PLIES; level++) {
+                IntList positions = levels[level];
+                levels[level] = null;
+                for (int i = 0; positions != null && i < positions.size(); i++) {
+                    int entry = positions.get(i);
+                    int index = entry >>> 1;
+                    boolean loss = (entry & 1) != 0;
+                    byte value = (byte) (loss ? -level - 1 : level);
+                    if (states[index] == UNSOLVED) {
+                        states[index] = SOLVED;
+                        values[index] = value;
+                    } else if (states[index] != SOLVED || values[index] != value) {
+                        // solved sooner by another route
+                        continue;
+                    }
+                    states[index] = RETRACTED;
+                    retract(index, loss, level);
+                }
+            }
+            return new Tablebase(material, ByteBuffer.wrap(values));
+        }
+
+        /**
+         * Generates a position's moves, solving it at once if it has none and
+         * scheduling it if a move out of the table wins
+         */
+        private void examine(int index) {
+            int toMove = decode(index);
+            long occupied = occupied();
+            if (!legal(toMove, occupied)) {
+                states[index] = ILLEGAL;
+                return;
+            }
+            int moves = 0;
+            int inTable = 0;
+            int shortestWin = Integer.MAX_VALUE;
+            int longestLoss = 0;
+            boolean canLose = true;
+            int king = kingSlot(toMove);
+            for (int slot = 0; slot < pieces.length; slot++) {
+                if (color(slot) != toMove) {
+                    continue;
+                }
+                int from = squares[slot];
+                long targets = targets(slot, toMove, occupied);
+                while (targets != 0) {
+                    int to = Long.numberOfTrailingZeros(targets);
+                    targets &= targets - 1;
+                    int captured = slotAt(to);
+                    squares[slot] = to;
+                    long after = occupied & ~(1L << from) | (1L << to);
+                    if (!attacked(squares[king], 1 - toMove, after, captured)) {
+                        moves++;
+                        boolean promotes = type(slot) == PAWN && (to < 8 || to >= 56);
+                        if (captured < 0 && !promotes) {
+                            inTable++;
+                        } else {
+                            for (int promotion : promotes ? PROMOTIONS : new int[]{type(slot)}) {
+                                int child = probeChild(slot, toMove * 6 + promotion, captured, 1 - toMove);
+                                if (child < 0) {
+                                    shortestWin = Math.min(shortestWin, -child);
+                                } else if (child > 0) {
+                                    longestLoss = Math.max(longestLoss, child + 1);
+                                } else {
+                                    canLose = false;
+                                }
+                            }
+                        }
+                    }
+                    squares[slot] = from;
+                }
+            }
+            if (moves == 0) {
+                if (attacked(squares[king], 1 - toMove, occupied, -1)) {
+                    schedule(index, true, 0);
+                } else {
+                    states[index] = SOLVED;
+                }
+                return;
+            }
+            unresolvedMoves[index] = (byte) inTable;
+            if (shortestWin != Integer.MAX_VALUE) {
+                canLose = false;
+                schedule(index, false, shortestWin);
+            }
+            exitLosses[index] = (byte) (canLose ? longestLoss : -1);
+            if (canLose && inTable == 0) {
+                schedule(index, true, longestLoss);
+            }
+        }
+
+        /**
+         * Takes back every quiet move that could have led to a solved position,
+         * solving or updating the positions it came from
+         */
+        private void retract(int index, boolean loss, int level) {
+            int toMove = decode(index);
+            int mover = 1 - toMove;
+            long occupied = occupied();
+            for (int slot = 0; slot < pieces.length; slot++) {
+                if (color(slot) != mover) {
+                    continue;
+                }
+                int to = squares[slot];
+                long origins = origins(slot, mover, occupied);
+                while (origins != 0) {
+                    int from = Long.numberOfTrailingZeros(origins);
+                    origins &= origins - 1;
+                    int previous = mover * positionsPerSide + (index & (positionsPerSide - 1))
+                            + (from - to) * weights[slot];
+                    if (states[previous] != UNSOLVED) {
+                        continue;
+                    }
+                    if (loss) {
+                        states[previous] = SOLVED;
+                        values[previous] = (byte) (level + 1);
+                        schedule(previous, false, level + 1);
+                    } else {
+                        int left = (unresolvedMoves[previous] & 0xFF) - 1;
+                        unresolvedMoves[previous] = (byte) left;
+                        if (left == 0 && exitLosses[previous] >= 0) {
+                            schedule(previous, true, Math.max(level + 1, exitLosses[previous]));
+                        }
+                    }
+                }
+            }
+        }
+
+        private void schedule(int index, boolean loss, int level) {
+            if (level > Tablebase.MAX_PLIES) {
+                throw new IllegalStateException(material + " has a mate longer than " + Tablebase.MAX_PLIES + " plies");
+            }
+            if (levels[level] == null) {
+                levels[level] = new IntList();
+            }
+            levels[level].add(index << 1 | (loss ? 1 : 0));
+        }
+
+        /**
+         * @return the value of the position reached by a capture or promotion, read
+         * from the table it falls into
+         */
+        private int probeChild(int moved, int movedPiece, int captured, int toMove) {
+            ChessBoard board = new ChessBoard();
+            int[] remaining = new int[pieces.length - (captured < 0 ? 0 : 1)];
+            int count = 0;
+            for (int slot = 0; slot < pieces.length; slot++) {
+                if (slot != captured) {
+                    int piece = slot == moved ? movedPiece : pieces[slot];
+                    board.addPiece(ChessPosition.ofSquare(squares[slot]), ChessPiece.ofIndex(piece));
+                    remaining[count++] = piece;
+                }
+            }
+            ChessGame.TeamColor color = ChessGame.TeamColor.values()[toMove];
+            int value = known.probe(board, color);
+            if (value == Tablebases.UNKNOWN) {
+                if (cannotMate(remaining)) {
+                    return 0;
+                }
+                generate(childMaterial(remaining));
+                value = known.probe(board, color);
+            }
+            return value;
+        }
+
+        private int decode(int index) {
+            for (int slot = pieces.length - 1; slot >= 0; slot--) {
+                squares[slot] = index & 63;
+                index >>>= 6;
+            }
+            return index;
+        }
+
+        private long occupied() {
+            long occupied = 0;
+            for (int square : squares) {
+                occupied |= 1L << square;
+            }
+            return occupied;
+        }
+
+        /**
+         * @return True if no two pieces share a square, no pawn stands on the first
+         * or last rank, and the side that just moved is not in check
+         */
+        private boolean legal(int toMove, long occupied) {
+            if (Long.bitCount(occupied) != pieces.length) {
+                return false;
+            }
+            for (int slot = 0; slot < pieces.length; slot++) {
+                if (type(slot) == PAWN && (squares[slot] < 8 || squares[slot] >= 56)) {
+                    return false;
+                }
+            }
+            return !attacked(squares[kingSlot(1 - toMove)], toMove, occupied, -1);
+        }
+
+        private long targets(int slot, int color, long occupied) {
+            int from = squares[slot];
+            long own = 0;
+            long enemy = 0;
+            for (int other = 0; other < pieces.length; other++) {
+                if (color(other) == color) {
+                    own |= 1L << squares[other];
+                } else {
+                    enemy |= 1L << squares[other];
+                }
+            }
+            if (type(slot) != PAWN) {
+                return attacks(slot, from, occupied) & ~own;
+            }
+            int forward = color == 0 ? 8 : -8;
+            long targets = attacks(slot, from, occupied) & enemy;
+            int single = from + forward;
+            if ((occupied & (1L << single)) == 0) {
+                targets |= 1L << single;
+                int startRank = color == 0 ? 1 : 6;
+                if (from / 8 == startRank && (occupied & (1L << (single + forward))) == 0) {
+                    targets |= 1L << (single + forward);
+                }
+            }
+            return targets;
+        }
+
+        /**
+         * @return the empty squares a piece could have made a quiet move from
+         */
+        private long origins(int slot, int color, long occupied) {
+            int to = squares[slot];
+            if (type(slot) != PAWN) {
+                return attacks(slot, to, occupied) & ~occupied;
+            }
+            int backward = color == 0 ? -8 : 8;
+            int single = to + backward;
+            int startRank = color == 0 ? 1 : 6;
+            if (single / 8 == (color == 0 ? 0 : 7) || (occupied & (1L << single)) != 0) {
+                return 0;
+            }
+            long origins = 1L << single;
+            int twoBack = single + backward;
+            if (single / 8 != startRank && twoBack / 8 == startRank && (occupied & (1L << twoBack)) == 0) {
+                origins |= 1L << twoBack;
+            }
+            return origins;
+        }
+
+        /**
+         * @return True if any piece of {@code color}, other than the one in slot
+         * {@code skip}, attacks {@code square}
+         */
+        private boolean attacked(int square, int color, long occupied, int skip) {
+            for (int slot = 0; slot < pieces.length; slot++) {
+                if (slot != skip && color(slot) == color
+                        && (attacks(slot, squares[slot], occupied) & (1L << square)) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private long attacks(int slot, int square, long occupied) {
+            int type = type(slot);
+            if (type == KING) {
+                return Bitboards.kingAttacksFrom(square);
+            } else if (type == QUEEN) {
+                return SlidingAttacks.queen(square, occupied);
+            } else if (type == ROOK) {
+                return SlidingAttacks.rook(square, occupied);
+            } else if (type == BISHOP) {
+                return SlidingAttacks.bishop(square, occupied);
+            } else if (type == KNIGHT) {
+                return Bitboards.knightAttacksFrom(square);
+            }
+            return Bitboards.pawnAttacksFrom(square, ChessGame.TeamColor.values()[color(slot)]);
+        }
+
+        private int slotAt(int square) {
+            for (int slot = 0; slot < pieces.length; slot++) {
+                if (squares[slot] == square) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private int kingSlot(int color) {
+            for (int slot = 0; slot < pieces.length; slot++) {
+                if (pieces[slot] == color * 6 + KING) {
+                    return slot;
+                }
+            }
+            throw new IllegalStateException("No king in " + material);
+        }
+
+        private int color(int slot) {
+            return pieces[slot] / 6;
+        }
+
+        private int type(int slot) {
+            return pieces[slot] % 6;
+        }
+    }
+
+    /**
+     * @return True if neither side can ever deliver mate: bare kings, or one
+     * king with a lone bishop or knight
+     */
+    private static boolean cannotMate(int[] pieces) {
+        int others = 0;
+        boolean minor = true;
+        for (int piece : pieces) {
+            int type = piece % 6;
+            if (type != KING) {
+                others++;
+                minor &= type == BISHOP || type == KNIGHT;
+            }
+        }
+        return others == 0 || others == 1 && minor;
+    }
+
+    /**
+     * @return the name to generate a set of pieces under, with the side that has
+     * more pieces as white
+     */
+    private static String childMaterial(int[] pieces) {
+        int white = 0;
+        for (int piece : pieces) {
+            if (piece < 6) {
+                white++;
+            }
+        }
+        if (white * 2 >= pieces.length) {
+            return Tablebase.name(pieces);
+        }
+        int[] flipped = new int[pieces.length];
+        for (int i = 0; i < pieces.length; i++) {
+            flipped[i] = Tablebase.swapColor(pieces[i]);
+        }
+        return Tablebase.name(flipped);
+    }
+
+    /**
+     * A growable list of ints, so the positions waiting at each ply are not boxed
+     */
+    private static final class IntList {
+        private int[] values = new int[256];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package chess;
+
+/**
+ * What a {@link Tablebase} says about a position, from the side to move's point of view
+ *
+ * @param outcome the result with perfect play
+ * @param plies   how many plies until mate, or 0 for a draw
+ */
+public record TablebaseResult(Outcome outcome, int plies) {
+
+    public enum Outcome {
+        WIN,
+        DRAW,
+        LOSS
+    }
+
+    /**
+     * @return the number of the winner's moves until mate, or 0 for a draw
+     */
+    public int movesToMate() {
+        return (plies + 1) / 2;
+    }
+}
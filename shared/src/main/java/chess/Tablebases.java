@@ -0,0 +1,184 @@
+package chess;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A set of {@link Tablebase}s, looked up by the material on the board.
+ * <p>
+ * Each table also answers for its mirror image with colors swapped, so
+ * {@code KQK} covers a black queen against a white king too. A lookup counts the
+ * pieces, compares the count against every table's material and reads one byte,
+ * so it allocates nothing and is cheap enough to call at every node of a search.
+ * <p>
+ * {@link #shared()} is used by {@link ChessGame#probeTablebases()} and by new
+ * {@link Engine}s. It maps every table in the directory named by the
+ * {@code chess.tablebases} system property, and is empty if the property is not set.
+ */
+public final class Tablebases {
+
+    /**
+     * What {@link #probe(ChessBoard, ChessGame.TeamColor)} returns for a position
+     * no table covers
+     */
+    static final int UNKNOWN = Integer.MIN_VALUE;
+
+    public static final Tablebases EMPTY = new Tablebases(List.of());
+
+    private static volatile Tablebases shared;
+
+    private final List<Tablebase> tables;
+    private final Tablebase[] byKey;
+    private final long[] keys;
+    private final boolean[] flipped;
+    private final int maxPieces;
+
+    Tablebases(Collection<Tablebase> tables) {
+        this.tables = List.copyOf(tables);
+        List<Tablebase> entries = new ArrayList<>();
+        List<Long> entryKeys = new ArrayList<>();
+        List<Boolean> entryFlips = new ArrayList<>();
+        int most = 0;
+        for (Tablebase table : this.tables) {
+            for (boolean flip : new boolean[]{false, true}) {
+                long key = Tablebase.materialKey(table.pieces(), flip);
+                if (!entryKeys.contains(key)) {
+                    entries.add(table);
+                    entryKeys.add(key);
+                    entryFlips.add(flip);
+                }
+            }
+            most = Math.max(most, table.pieceCount());
+        }
+        byKey = entries.toArray(new Tablebase[0]);
+        keys = new long[byKey.length];
+        flipped = new boolean[byKey.length];
+        for (int i = 0; i < byKey.length; i++) {
+            keys[i] = entryKeys.get(i);
+            flipped[i] = entryFlips.get(i);
+        }
+        maxPieces = most;
+    }
+
+    /**
+     * Maps every {@code .tb} file in a directory
+     *
+     * @throws IOException if the directory or one of its tables cannot be read
+     */
+    public static Tablebases open(Path directory) throws IOException {
+        List<Tablebase> tables = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + Tablebase.EXTENSION)) {
+            for (Path file : files) {
+                tables.add(Tablebase.open(file));
+            }
+        }
+        return new Tablebases(tables);
+    }
+
+    /**
+     * @return the tablebases shared by every game in this JVM
+     * @throws UncheckedIOException if {@code chess.tablebases} names a directory
+     *                              that cannot be read
+     */
+    public static Tablebases shared() {
+        Tablebases tablebases = shared;
+        if (tablebases == null) {
+            synchronized (Tablebases.class) {
+                tablebases = shared;
+                if (tablebases == null) {
+                    String directory = System.getProperty("chess.tablebases");
+                    try {
+                        tablebases = directory == null ? EMPTY : open(Path.of(directory));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    shared = tablebases;
+                }
+            }
+        }
+        return tablebases;
+    }
+
+    /**
+     * Replaces the shared tablebases, for example after new tables are generated.
+     * Games and engines already holding the old set keep using it.
+     */
+    public static void setShared(Tablebases tablebases) {
+        shared = tablebases;
+    }
+
+    /**
+     * @return the tables in this set
+     */
+    public List<Tablebase> tables() {
+        return tables;
+    }
+
+    /**
+     * @return the most pieces, kings included, any table covers, or 0 if the set is empty
+     */
+    public int maxPieces() {
+        return maxPieces;
+    }
+
+    /**
+     * @return a copy of this set with one more table, replacing any table of the same material
+     */
+    Tablebases with(Tablebase table) {
+        List<Tablebase> more = new ArrayList<>(tables);
+        more.removeIf(existing -> existing.material().equals(table.material()));
+        more.add(table);
+        return new Tablebases(more);
+    }
+
+    /**
+     * Looks up what a game's position is worth with perfect play
+     *
+     * @return the result for the team to move, or null if no table covers the position
+     */
+    public TablebaseResult probe(ChessGame game) {
+        int value = probe(game.getBoard(), game.getTeamTurn());
+        if (value == UNKNOWN) {
+            return null;
+        }
+        if (value > 0) {
+            return new TablebaseResult(TablebaseResult.Outcome.WIN, value);
+        }
+        if (value < 0) {
+            return new TablebaseResult(TablebaseResult.Outcome.LOSS, -value - 1);
+        }
+        return new TablebaseResult(TablebaseResult.Outcome.DRAW, 0);
+    }
+
+    /**
+     * @return the stored {@link Tablebase} byte for a position, or {@link #UNKNOWN}
+     * if no table covers it. Tables are built without castling or en passant, so
+     * a position where either is still possible is never covered.
+     */
+    int probe(ChessBoard board, ChessGame.TeamColor toMove) {
+        if (Long.bitCount(board.occupied()) > maxPieces
+                || board.castlingRights() != 0 || board.enPassantSquare() != 0
+                || board.kingSquare(ChessGame.TeamColor.WHITE) == ChessBoard.NO_SQUARE
+                || board.kingSquare(ChessGame.TeamColor.BLACK) == ChessBoard.NO_SQUARE) {
+            return UNKNOWN;
+        }
+        long key = 0;
+        for (int piece = 0; piece < 12; piece++) {
+            if (piece % 6 != ChessPiece.PieceType.KING.ordinal()) {
+                key += (long) Long.bitCount(board.pieces(piece)) << (4 * piece);
+            }
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == key) {
+                return byKey[i].value(byKey[i].index(board, toMove, flipped[i]));
+            }
+        }
+        return UNKNOWN;
+    }
+}
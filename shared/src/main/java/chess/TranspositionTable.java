@@ -0,0 +1,103 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * A hash table of search results keyed by position, so positions reached again
+ * through a different move order, or at the next iteration of a deepening
+ * search, start from what is already known about them.
+ * <p>
+ * Each slot holds a position key and one {@code long} of data: the best move in
+ * bits 0-15, the score in bits 16-31, the searched depth in bits 32-39 and the
+ * bound type in bits 40-41. A slot is overwritten unless it holds a deeper
+ * result for the same position.
+ * <p>
+ * Search threads share one table without locking. A slot is two adjacent
+ * {@code long}s, and the first holds the key XORed with the data rather than the
+ * key itself. Two threads writing the same slot at once can leave one thread's
+ * key word beside the other's data word, but then the XOR no longer gives back
+ * the probed key and the probe is a miss, so a torn slot is never read as a hit.
+ */
+final class TranspositionTable {
+
+    static final int EXACT = 1;
+    static final int LOWER_BOUND = 2;
+    static final int UPPER_BOUND = 3;
+
+    private final long[] slots;
+    private final int mask;
+
+    /**
+     * @param entries the number of slots, rounded down to a power of two
+     */
+    TranspositionTable(int entries) {
+        int capacity = Integer.highestOneBit(Math.max(entries, 1));
+        slots = new long[capacity * 2];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return the data stored for a position, or 0 if there is none
+     */
+    long probe(long key) {
+        int slot = ((int) key & mask) * 2;
+        long data = slots[slot + 1];
+        return (slots[slot] ^ data) == key ? data : 0L;
+    }
+
+    /**
+     * @param score a score relative to the root; mate scores are stored relative
+     *              to this position so they stay right when it is reached at
+     *              another ply
+     */
+    void store(long key, int move, int score, int depth, int bound, int ply) {
+        int slot = ((int) key & mask) * 2;
+        long existing = probe(key);
+        if (existing != 0 && depth(existing) > depth) {
+            return;
+        }
+        long data = (move & 0xFFFFL)
+                | ((long) (toStored(score, ply) & 0xFFFF) << 16)
+                | ((long) Math.min(depth, 0xFF) << 32)
+                | ((long) bound << 40);
+        slots[slot] = key ^ data;
+        slots[slot + 1] = data;
+    }
+
+    void clear() {
+        Arrays.fill(slots, 0L);
+    }
+
+    static int move(long entry) {
+        return (int) (entry & 0xFFFF);
+    }
+
+    static int score(long entry, int ply) {
+        int stored = (short) (entry >>> 16);
+        if (stored >= Engine.MATE_BOUND) {
+            return stored - ply;
+        }
+        if (stored <= -Engine.MATE_BOUND) {
+            return stored + ply;
+        }
+        return stored;
+    }
+
+    static int depth(long entry) {
+        return (int) ((entry >>> 32) & 0xFF);
+    }
+
+    static int bound(long entry) {
+        return (int) ((entry >>> 40) & 0x3);
+    }
+
+    private static int toStored(int score, int ply) {
+        if (score >= Engine.MATE_BOUND) {
+            return score + ply;
+        }
+        if (score <= -Engine.MATE_BOUND) {
+            return score - ply;
+        }
+        return score;
+    }
+}
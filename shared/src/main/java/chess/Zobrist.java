@@ -0,0 +1,58 @@
+package chess;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing. A position's key is the XOR of one key per
+ * piece on its square plus keys for the rule state, so it can be updated with a
+ * couple of XORs whenever a piece moves.
+ * <p>
+ * The keys come from a fixed seed so the same position has the same key in every
+ * JVM, which lets keys be stored and compared across restarts.
+ */
+final class Zobrist {
+
+    private static final long[][] PIECE_SQUARE = new long[12][64];
+    static final long BLACK_TO_MOVE;
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT = new long[64];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x240C4E55L);
+        for (long[] squares : PIECE_SQUARE) {
+            for (int square = 0; square < 64; square++) {
+                squares[square] = random.nextLong();
+            }
+        }
+        BLACK_TO_MOVE = random.nextLong();
+        // one key per castling right, combined for every set of rights
+        for (int right = 1; right < 16; right <<= 1) {
+            long key = random.nextLong();
+            for (int rights = right; rights < 16; rights = (rights + 1) | right) {
+                CASTLING[rights] ^= key;
+            }
+        }
+        // one key per en passant file; square 0 is never a target and means none
+        for (int file = 0; file < 8; file++) {
+            long key = random.nextLong();
+            for (int square = 8 + file; square < 64; square += 8) {
+                EN_PASSANT[square] = key;
+            }
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    static long piece(int pieceIndex, int square) {
+        return PIECE_SQUARE[pieceIndex][square];
+    }
+
+    /**
+     * @param rules a {@link ChessBoard} rule state: castling rights in bits 0-3 and
+     *              the en passant square above them
+     */
+    static long rules(int rules) {
+        return CASTLING[rules & 0xF] ^ EN_PASSANT[rules >>> 4];
+    }
+}
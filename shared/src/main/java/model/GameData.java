@@ -3,4 +3,24 @@ package model;
 import chess.ChessGame;
 
 public record GameData(int gameID, String whiteUsername, String blackUsername, String gameName, ChessGame game) {
+
+  /**
+   * The username of the server's computer player. Putting it in a seat makes the
+   * server play that color; no user can register it.
+   */
+  public static final String COMPUTER_USERNAME = "computer";
+
+  /**
+   * @return the username seated as a color, or null if the seat is empty
+   */
+  public String username(ChessGame.TeamColor color) {
+    return color == ChessGame.TeamColor.WHITE ? whiteUsername : blackUsername;
+  }
+
+  /**
+   * @return True if the game is still going and the computer holds the seat whose turn it is
+   */
+  public boolean isComputerTurn() {
+    return game != null && !game.isGameOver() && COMPUTER_USERNAME.equals(username(game.getTeamTurn()));
+  }
 }
@@ -1,4 +1,7 @@
 package model;
 
-public record JoinGameData(String playerColor, int gameID) {
+/**
+ * @param computerOpponent True to seat the computer in the other color as well
+ */
+public record JoinGameData(String playerColor, int gameID, boolean computerOpponent) {
 }
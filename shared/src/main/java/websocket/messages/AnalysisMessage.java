@@ -0,0 +1,71 @@
+package websocket.messages;
+
+import chess.ChessMove;
+
+import java.util.List;
+
+/**
+ * One update of an engine's analysis of a game's position. Scores are in
+ * centipawns from white's point of view.
+ */
+public class AnalysisMessage extends ServerMessage {
+  private final int gameID;
+  private final int depth;
+  private final int score;
+  private final int mateIn;
+  private final ChessMove bestMove;
+  private final List<ChessMove> principalVariation;
+  private final long nodes;
+  private final boolean finished;
+
+  public AnalysisMessage(int gameID, int depth, int score, int mateIn, ChessMove bestMove,
+                         List<ChessMove> principalVariation, long nodes, boolean finished) {
+    this.serverMessageType = ServerMessageType.ANALYSIS;
+    this.gameID = gameID;
+    this.depth = depth;
+    this.score = score;
+    this.mateIn = mateIn;
+    this.bestMove = bestMove;
+    this.principalVariation = principalVariation;
+    this.nodes = nodes;
+    this.finished = finished;
+  }
+
+  public int getGameID() {
+    return gameID;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  public int getScore() {
+    return score;
+  }
+
+  /**
+   * @return moves until mate, positive when white mates, or 0 if no mate was found
+   */
+  public int getMateIn() {
+    return mateIn;
+  }
+
+  public ChessMove getBestMove() {
+    return bestMove;
+  }
+
+  public List<ChessMove> getPrincipalVariation() {
+    return principalVariation;
+  }
+
+  public long getNodes() {
+    return nodes;
+  }
+
+  /**
+   * @return True if this is the last update of the analysis
+   */
+  public boolean isFinished() {
+    return finished;
+  }
+}
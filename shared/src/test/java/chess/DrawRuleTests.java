@@ -0,0 +1,140 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+public class DrawRuleTests {
+
+    private static ChessMove move(String move) {
+        return new ChessMove(new ChessPosition(move.charAt(1) - '0', move.charAt(0) - 'a' + 1),
+                new ChessPosition(move.charAt(3) - '0', move.charAt(2) - 'a' + 1), null);
+    }
+
+    private static void play(ChessGame game, String... moves) throws InvalidMoveException {
+        for (String move : moves) {
+            game.makeMove(move(move));
+        }
+    }
+
+    @Test
+    @DisplayName("A position seen three times is a draw")
+    public void threefoldRepetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        play(game, "g1f3", "g8f6", "f3g1", "f6g8");
+        Assertions.assertEquals(2, game.getRepetitionCount());
+        Assertions.assertEquals(ChessGame.GameStatus.NORMAL, game.getGameStatus());
+
+        play(game, "g1f3", "g8f6", "f3g1", "f6g8");
+        Assertions.assertEquals(3, game.getRepetitionCount());
+        Assertions.assertEquals(ChessGame.GameStatus.THREEFOLD_REPETITION, game.getGameStatus());
+        Assertions.assertTrue(game.getGameStatus().isGameOver());
+        Assertions.assertEquals(ChessGame.GameStatus.NORMAL, game.getGameStatus(ChessGame.TeamColor.BLACK));
+        Assertions.assertEquals(8, game.getPlyCount());
+
+        game.undoMove();
+        Assertions.assertEquals(ChessGame.GameStatus.NORMAL, game.getGameStatus());
+        Assertions.assertEquals(2, game.getRepetitionCount());
+    }
+
+    @Test
+    @DisplayName("A copy keeps the positions played before it")
+    public void copyKeepsHistory() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        play(game, "g1f3", "g8f6", "f3g1", "f6g8");
+        ChessGame copy = game.copy();
+        Assertions.assertEquals(2, copy.getRepetitionCount());
+
+        play(copy, "g1f3", "g8f6", "f3g1", "f6g8");
+        Assertions.assertEquals(ChessGame.GameStatus.THREEFOLD_REPETITION, copy.getGameStatus());
+        Assertions.assertEquals(2, game.getRepetitionCount());
+        Assertions.assertEquals(4, game.getPlyCount());
+    }
+
+    @Test
+    @DisplayName("Replayed moves count toward repetitions like played ones")
+    public void replayKeepsHistory() throws InvalidMoveException {
+        ChessGame played = new ChessGame();
+        ChessGame replayed = new ChessGame();
+        for (String move : new String[]{"g1f3", "g8f6", "f3g1", "f6g8"}) {
+            played.makeMove(move(move));
+            replayed.replayMove(PackedMove.fromChessMove(move(move)));
+        }
+        Assertions.assertEquals(played, replayed);
+        Assertions.assertEquals(2, replayed.getRepetitionCount());
+        Assertions.assertThrows(InvalidMoveException.class, () -> replayed.replayMove(PackedMove.fromChessMove(move("e7e5"))));
+    }
+
+    @Test
+    @DisplayName("A hundred plies without a capture or pawn move is a draw")
+    public void fiftyMoveRule() throws InvalidMoveException {
+        ChessGame game = Fen.decode("4k3/8/8/8/8/8/4P3/4K3 w - - 99 80");
+        Assertions.assertEquals(99, game.getHalfmoveClock());
+        play(game, "e1d1");
+        Assertions.assertEquals(100, game.getHalfmoveClock());
+        Assertions.assertEquals(ChessGame.GameStatus.FIFTY_MOVE_RULE, game.getGameStatus());
+
+        game.undoMove();
+        Assertions.assertEquals(99, game.getHalfmoveClock());
+        play(game, "e2e3");
+        Assertions.assertEquals(0, game.getHalfmoveClock());
+        Assertions.assertEquals(ChessGame.GameStatus.NORMAL, game.getGameStatus());
+    }
+
+    @Test
+    @DisplayName("Checkmate on the hundredth ply still wins")
+    public void mateBeatsFiftyMoveRule() throws InvalidMoveException {
+        ChessGame game = Fen.decode("7k/8/6K1/8/8/8/8/1Q6 w - - 99 90");
+        play(game, "b1b8");
+        Assertions.assertEquals(ChessGame.GameStatus.CHECKMATE, game.getGameStatus());
+    }
+
+    @Test
+    @DisplayName("Move counters survive FEN and the binary encoding")
+    public void countersRoundTrip() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        play(game, "g1f3", "g8f6", "b1c3");
+        Assertions.assertEquals("rnbqkb1r/pppppppp/5n2/8/8/2N2N2/PPPPPPPP/R1BQKB1R b KQkq - 3 2", Fen.encode(game));
+
+        ChessGame decoded = GameCodec.decode(GameCodec.encode(game));
+        Assertions.assertEquals(3, decoded.getHalfmoveClock());
+        Assertions.assertEquals(3, decoded.getPlyCount());
+        Assertions.assertEquals(Fen.encode(game), Fen.encode(decoded));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.decode("8/8/8/8/8/8/8/8 w - - x 1"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.decode("8/8/8/8/8/8/8/8 w - - 0 0"));
+    }
+
+    @Test
+    @DisplayName("The history counts keys correctly through pushes and pops")
+    public void historyCounts() {
+        PositionHistory history = new PositionHistory();
+        Map<Long, Integer> expected = new HashMap<>();
+        Deque<Long> pushed = new ArrayDeque<>();
+        SplittableRandom random = new SplittableRandom(240);
+        for (int step = 0; step < 20_000; step++) {
+            if (pushed.isEmpty() || random.nextInt(3) > 0) {
+                // few distinct keys whose low bits collide, so probe runs get long
+                long key = (long) random.nextInt(300) << 40 | random.nextInt(4);
+                history.push(key);
+                pushed.push(key);
+                expected.merge(key, 1, Integer::sum);
+            } else {
+                long key = pushed.pop();
+                history.pop();
+                expected.merge(key, -1, Integer::sum);
+            }
+            if (step % 97 == 0) {
+                for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+                    Assertions.assertEquals((int) entry.getValue(), history.count(entry.getKey()));
+                }
+            }
+        }
+    }
+}
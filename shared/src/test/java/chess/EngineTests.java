@@ -0,0 +1,61 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class EngineTests {
+
+    @Test
+    @DisplayName("Finds mate in one")
+    public void mateInOne() {
+        SearchResult result = new Engine(1 << 12).search(Fen.decode("6k1/5ppp/8/8/8/8/8/R5K1 w"), SearchLimits.depth(4));
+        Assertions.assertEquals(new ChessMove(new ChessPosition(1, 1), new ChessPosition(8, 1), null), result.bestMove());
+        Assertions.assertEquals(1, result.mateIn());
+    }
+
+    @Test
+    @DisplayName("Wins a hanging queen")
+    public void capturesQueen() {
+        SearchResult result = new Engine(1 << 12).search(Fen.decode("4k3/8/8/3q4/8/8/3R4/3K4 w"), SearchLimits.depth(4));
+        Assertions.assertEquals(new ChessMove(new ChessPosition(2, 4), new ChessPosition(5, 4), null), result.bestMove());
+        Assertions.assertTrue(result.score() > 300);
+    }
+
+    @Test
+    @DisplayName("No move when the side to move has none")
+    public void noMoves() {
+        SearchResult result = new Engine(1 << 12).search(Fen.decode("7k/5Q2/6K1/8/8/8/8/8 b"), SearchLimits.depth(4));
+        Assertions.assertNull(result.bestMove());
+        Assertions.assertEquals(0, result.score());
+    }
+
+    @Test
+    @DisplayName("Search respects limits and leaves the game alone")
+    public void respectsLimits() {
+        ChessGame game = new ChessGame();
+        Engine engine = new Engine(1 << 12);
+        SearchResult byDepth = engine.search(game, SearchLimits.depth(3));
+        Assertions.assertEquals(3, byDepth.depth());
+        Assertions.assertNotNull(byDepth.bestMove());
+        Assertions.assertEquals(byDepth.bestMove(), byDepth.principalVariation().get(0));
+
+        SearchResult byNodes = engine.search(game, SearchLimits.nodes(5_000));
+        Assertions.assertTrue(byNodes.nodes() <= 5_000 || byNodes.depth() == 1);
+        Assertions.assertEquals(new ChessGame(), game);
+    }
+
+    @Test
+    @DisplayName("Several threads agree with one")
+    public void parallelSearch() {
+        try (Engine engine = new Engine(1 << 12, 4)) {
+            SearchResult mate = engine.search(Fen.decode("6k1/5ppp/8/8/8/8/8/R5K1 w"), SearchLimits.depth(4));
+            Assertions.assertEquals(new ChessMove(new ChessPosition(1, 1), new ChessPosition(8, 1), null), mate.bestMove());
+            Assertions.assertEquals(1, mate.mateIn());
+
+            SearchResult byNodes = engine.search(new ChessGame(), SearchLimits.nodes(20_000));
+            Assertions.assertNotNull(byNodes.bestMove());
+            Assertions.assertTrue(byNodes.depth() >= 1);
+        }
+    }
+}
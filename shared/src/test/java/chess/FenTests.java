@@ -0,0 +1,67 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class FenTests {
+
+    @Test
+    @DisplayName("Starting position encodes to the standard FEN")
+    public void startPosition() {
+        Assertions.assertEquals(Fen.START, Fen.encode(new ChessGame()));
+        Assertions.assertEquals(new ChessGame(), Fen.decode(Fen.START));
+    }
+
+    @Test
+    @DisplayName("Encoding round-trips through decoding")
+    public void roundTrip() {
+        for (Perft.Position position : Perft.REFERENCE_POSITIONS) {
+            ChessGame game = Fen.decode(position.fen());
+            Assertions.assertEquals(position.fen(), Fen.encode(game), position.name());
+            Assertions.assertEquals(game, Fen.decode(Fen.encode(game)), position.name());
+        }
+    }
+
+    @Test
+    @DisplayName("Side to move is read and written")
+    public void sideToMove() {
+        ChessGame game = Fen.decode("4k3/8/8/8/8/8/8/4K3 b");
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, game.getTeamTurn());
+        Assertions.assertEquals("4k3/8/8/8/8/8/8/4K3 b - - 0 1", Fen.encode(game));
+        Assertions.assertEquals("4k3/8/8/8/8/8/8/4K3", Fen.encode(game.getBoard()));
+    }
+
+    @Test
+    @DisplayName("Castling rights and en passant are read and written")
+    public void ruleState() throws InvalidMoveException {
+        ChessGame game = Fen.decode("r3k2r/8/8/8/8/8/8/R3K2R w Kq - 0 1");
+        Assertions.assertEquals("r3k2r/8/8/8/8/8/8/R3K2R w Kq - 0 1", Fen.encode(game));
+        Assertions.assertNotEquals(Fen.decode("r3k2r/8/8/8/8/8/8/R3K2R w - - 0 1").getPositionKey(), game.getPositionKey());
+        Assertions.assertEquals(0, Fen.decode("4k3/8/8/8/8/8/8/R3K2R w KQkq - 0 1").getBoard().castlingRights() & 0xC);
+
+        game = Fen.decode("4k3/8/8/8/3p4/8/4P3/4K3 w - - 0 1");
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        Assertions.assertEquals("4k3/8/8/8/3pP3/8/8/4K3 b - e3 0 1", Fen.encode(game));
+        Assertions.assertEquals(game, Fen.decode(Fen.encode(game)));
+        game.undoMove();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(3, 5), null));
+        game.makeMove(new ChessMove(new ChessPosition(8, 5), new ChessPosition(8, 4), null));
+        game.makeMove(new ChessMove(new ChessPosition(3, 5), new ChessPosition(4, 5), null));
+        Assertions.assertEquals("3k4/8/8/8/3pP3/8/8/4K3 b - - 0 2", Fen.encode(game),
+                "a single step leaves no en passant square");
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.decode("4k3/8/8/8/8/8/8/4K3 w KX - 0 1"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.decode("4k3/8/8/8/8/8/8/4K3 w - e3 0 1"));
+    }
+
+    @Test
+    @DisplayName("Malformed FEN is rejected")
+    public void malformed() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.decode("8/8/8/8/8/8/8 w"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.decode("9/8/8/8/8/8/8/8 w"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.decode("ppppppppp/8/8/8/8/8/8/8 w"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.decode("x7/8/8/8/8/8/8/8 w"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.decode("8/8/8/8/8/8/8/8 white"));
+    }
+}
@@ -0,0 +1,51 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class GameCodecTests {
+
+    @Test
+    @DisplayName("Games round-trip through the binary encoding")
+    public void roundTrip() {
+        for (Perft.Position position : Perft.REFERENCE_POSITIONS) {
+            ChessGame game = Fen.decode(position.fen());
+            byte[] bytes = GameCodec.encode(game);
+            Assertions.assertEquals(GameCodec.LENGTH, bytes.length);
+            Assertions.assertEquals(game, GameCodec.decode(bytes), position.name());
+        }
+    }
+
+    @Test
+    @DisplayName("Turn and game over flags are kept")
+    public void flags() {
+        ChessGame game = new ChessGame();
+        game.setTeamTurn(ChessGame.TeamColor.BLACK);
+        game.setGameOver(true);
+        ChessGame decoded = GameCodec.decode(GameCodec.encode(game));
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, decoded.getTeamTurn());
+        Assertions.assertTrue(decoded.isGameOver());
+    }
+
+    @Test
+    @DisplayName("Castling rights and en passant are kept")
+    public void ruleState() {
+        ChessGame game = Fen.decode("r3k2r/8/8/8/3pP3/8/8/R3K2R b Qk e3 0 1");
+        ChessGame decoded = GameCodec.decode(GameCodec.encode(game));
+        Assertions.assertEquals(Fen.encode(game), Fen.encode(decoded));
+        Assertions.assertEquals(game, decoded);
+    }
+
+    @Test
+    @DisplayName("Unknown versions and lengths are rejected")
+    public void rejectsBadInput() {
+        byte[] bytes = GameCodec.encode(new ChessGame());
+        bytes[0] = 99;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(bytes));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(new byte[]{GameCodec.VERSION, 0}));
+        byte[] truncated = new byte[GameCodec.LENGTH - 1];
+        System.arraycopy(GameCodec.encode(new ChessGame()), 0, truncated, 0, truncated.length);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(truncated));
+    }
+}
@@ -0,0 +1,59 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class MoveCacheTests {
+
+    @Test
+    @DisplayName("Lookups count hits and misses")
+    public void countsHitsAndMisses() {
+        MoveCache cache = new MoveCache(16);
+        MoveList moves = new MoveList();
+        new ChessGame().legalMoves(moves);
+
+        Assertions.assertNull(cache.get(42L));
+        cache.put(42L, moves, ChessGame.GameStatus.NORMAL);
+        MoveCache.Entry entry = cache.get(42L);
+        Assertions.assertNotNull(entry);
+        Assertions.assertEquals(20, entry.size());
+        Assertions.assertEquals(1, cache.hits());
+        Assertions.assertEquals(1, cache.misses());
+
+        Assertions.assertSame(entry, cache.peek(42L));
+        Assertions.assertNull(cache.peek(43L));
+        Assertions.assertEquals(1, cache.hits());
+        Assertions.assertEquals(1, cache.misses());
+    }
+
+    @Test
+    @DisplayName("A position replaces the one in its slot")
+    public void evictsOnCollision() {
+        MoveCache cache = new MoveCache(4);
+        MoveList moves = new MoveList();
+        cache.put(1L, moves, ChessGame.GameStatus.STALEMATE);
+        cache.put(1L + cache.capacity(), moves, ChessGame.GameStatus.CHECKMATE);
+
+        Assertions.assertNull(cache.get(1L));
+        Assertions.assertEquals(ChessGame.GameStatus.CHECKMATE, cache.get(1L + cache.capacity()).status);
+        Assertions.assertEquals(1, cache.evictions());
+    }
+
+    @Test
+    @DisplayName("Capacity rounds up to a power of two")
+    public void roundsCapacity() {
+        Assertions.assertEquals(8, new MoveCache(5).capacity());
+        Assertions.assertEquals(8, new MoveCache(8).capacity());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new MoveCache(0));
+    }
+
+    @Test
+    @DisplayName("Games share cached positions")
+    public void gamesShareCache() {
+        new ChessGame().validMoves(new ChessPosition(2, 5));
+        long hits = MoveCache.shared().hits();
+        Assertions.assertEquals(2, new ChessGame().validMoves(new ChessPosition(2, 5)).size());
+        Assertions.assertTrue(MoveCache.shared().hits() > hits);
+    }
+}
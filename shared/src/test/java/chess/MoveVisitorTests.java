@@ -0,0 +1,71 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class MoveVisitorTests {
+
+    @Test
+    @DisplayName("Visiting, counting and streaming see the same moves as legalMoves")
+    public void sameMoves() {
+        for (Perft.Position position : Perft.REFERENCE_POSITIONS) {
+            ChessGame game = Fen.decode(position.fen());
+            MoveList moves = new MoveList();
+            game.legalMoves(moves);
+            Set<Integer> expected = new HashSet<>();
+            for (int i = 0; i < moves.size(); i++) {
+                expected.add(moves.get(i));
+            }
+
+            Set<Integer> visited = new HashSet<>();
+            Assertions.assertTrue(game.visitLegalMoves(visited::add), position.name());
+            Assertions.assertEquals(expected, visited, position.name());
+            Assertions.assertEquals(expected.size(), game.countLegalMoves(), position.name());
+            Assertions.assertEquals(expected, game.legalMoveStream().map(PackedMove::fromChessMove).collect(Collectors.toSet()),
+                    position.name());
+        }
+    }
+
+    @Test
+    @DisplayName("A visitor can stop generation early")
+    public void stopsEarly() {
+        ChessGame game = new ChessGame();
+        int[] visits = new int[1];
+        Assertions.assertFalse(game.visitLegalMoves(move -> ++visits[0] < 3));
+        Assertions.assertEquals(3, visits[0]);
+        Assertions.assertEquals(5, game.legalMoveStream().limit(5).count());
+        Assertions.assertTrue(game.hasLegalMove(ChessGame.TeamColor.WHITE));
+        Assertions.assertFalse(game.anyValidMoves(ChessGame.TeamColor.WHITE));
+    }
+
+    @Test
+    @DisplayName("Checkmate and stalemate have no legal move")
+    public void noMoves() {
+        ChessGame mate = Fen.decode("rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3");
+        Assertions.assertFalse(mate.hasLegalMove(ChessGame.TeamColor.WHITE));
+        Assertions.assertTrue(mate.anyValidMoves(ChessGame.TeamColor.WHITE));
+        Assertions.assertEquals(0, mate.legalMoveStream().count());
+
+        ChessGame stalemate = Fen.decode("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1");
+        Assertions.assertFalse(stalemate.hasLegalMove(ChessGame.TeamColor.BLACK));
+        Assertions.assertTrue(stalemate.visitLegalMoves(move -> false));
+        Assertions.assertEquals(0, stalemate.countLegalMoves());
+    }
+
+    @Test
+    @DisplayName("Streams fail fast when the board changes")
+    public void failsFast() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        Iterator<ChessMove> moves = game.legalMoveStream().iterator();
+        ChessMove first = moves.next();
+        game.makeMove(first);
+        Assertions.assertThrows(ConcurrentModificationException.class, moves::next);
+    }
+}
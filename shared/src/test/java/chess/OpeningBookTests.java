@@ -0,0 +1,64 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class OpeningBookTests {
+
+    private static ChessMove move(String move) {
+        return new ChessMove(new ChessPosition(move.charAt(1) - '0', move.charAt(0) - 'a' + 1),
+                new ChessPosition(move.charAt(3) - '0', move.charAt(2) - 'a' + 1), null);
+    }
+
+    @Test
+    @DisplayName("The book plays the most common move from a position")
+    public void mostCommonMove() throws IOException, InvalidMoveException {
+        OpeningBookBuilder builder = new OpeningBookBuilder(4);
+        builder.addGame(List.of(move("e2e4"), move("e7e5"), move("g1f3"), move("b8c6"), move("f1b5")));
+        builder.addGame(List.of(move("e2e4"), move("c7c5"), move("g1f3")));
+        builder.addGame(List.of(move("d2d4"), move("d7d5")));
+        Assertions.assertEquals(8, builder.size());
+
+        Path file = Files.createTempFile("book", ".bin");
+        try {
+            builder.write(file);
+            Assertions.assertEquals(8L * OpeningBook.ENTRY_BYTES, Files.size(file));
+            OpeningBook book = OpeningBook.open(file);
+            Assertions.assertEquals(8, book.size());
+
+            ChessGame game = new ChessGame();
+            Assertions.assertEquals(move("e2e4"), book.lookup(game));
+            Assertions.assertEquals(PackedMove.fromChessMove(move("e2e4")), book.probe(game.getPositionKey()));
+
+            game.makeMove(move("e2e4"));
+            Assertions.assertNotNull(book.lookup(game));
+            game.makeMove(move("e7e5"));
+            game.makeMove(move("g1f3"));
+            game.makeMove(move("b8c6"));
+            Assertions.assertNull(book.lookup(game), "plies past the limit are not in the book");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Empty and malformed books")
+    public void emptyAndMalformed() throws IOException {
+        Assertions.assertNull(OpeningBook.EMPTY.lookup(new ChessGame()));
+        Assertions.assertEquals(0, OpeningBook.EMPTY.probe(new ChessGame().getPositionKey()));
+
+        Path file = Files.createTempFile("book", ".bin");
+        try {
+            Files.write(file, new byte[OpeningBook.ENTRY_BYTES + 1]);
+            Assertions.assertThrows(IOException.class, () -> OpeningBook.open(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
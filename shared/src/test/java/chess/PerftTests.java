@@ -0,0 +1,45 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+public class PerftTests {
+
+    @Test
+    @DisplayName("Perft matches reference counts")
+    public void referencePositions() {
+        for (Perft.Position position : Perft.REFERENCE_POSITIONS) {
+            for (int depth = 1; depth <= position.nodes().length; depth++) {
+                Assertions.assertEquals(position.nodes()[depth - 1], Perft.perft(Fen.decode(position.fen()), depth),
+                        position.name() + " depth " + depth);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Perft by piece matches legal generation")
+    public void pieceMovesAgree() {
+        // depths whose trees have no castling or en passant, which pieceMoves cannot see
+        Map<String, Integer> depths = Map.of("start", 3, "endgame", 2, "middlegame", 3);
+        for (Perft.Position position : Perft.REFERENCE_POSITIONS) {
+            Integer depth = depths.get(position.name());
+            if (depth != null) {
+                Assertions.assertEquals(position.nodes()[depth - 1], Perft.perftByPiece(Fen.decode(position.fen()), depth),
+                        position.name() + " depth " + depth);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Divide sums to perft")
+    public void divideSumsToPerft() {
+        ChessGame game = new ChessGame();
+        var counts = Perft.divide(game, 3);
+        Assertions.assertEquals(20, counts.size());
+        Assertions.assertEquals(8_902L, counts.values().stream().mapToLong(Long::longValue).sum());
+        Assertions.assertEquals(new ChessGame(), game, "divide should leave the game unchanged");
+    }
+}
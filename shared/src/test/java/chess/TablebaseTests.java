@@ -0,0 +1,123 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TablebaseTests {
+
+    private static Tablebases tablebases;
+
+    /**
+     * KPK needs KQK and KRK, so generating it once covers every test
+     */
+    private static synchronized Tablebases tablebases() {
+        if (tablebases == null) {
+            TablebaseGenerator generator = new TablebaseGenerator();
+            generator.generate("KPK");
+            tablebases = generator.tablebases();
+        }
+        return tablebases;
+    }
+
+    private static Tablebase table(String material) {
+        return tablebases().tables().stream().filter(table -> table.material().equals(material)).findFirst()
+                .orElseThrow();
+    }
+
+    private static int longestWin(Tablebase table) {
+        int longest = 0;
+        for (int index = 0; index < Tablebase.positions(table.pieceCount()); index++) {
+            longest = Math.max(longest, table.value(index));
+        }
+        return longest;
+    }
+
+    @Test
+    @DisplayName("Generated tables find the known longest mates")
+    public void longestMates() {
+        Assertions.assertEquals(19, longestWin(table("KQK")), "KQK mates in at most 10 moves");
+        Assertions.assertEquals(31, longestWin(table("KRK")), "KRK mates in at most 16 moves");
+        Assertions.assertEquals(3, tablebases().maxPieces());
+    }
+
+    @Test
+    @DisplayName("Tables answer for both colors")
+    public void probeBothColors() {
+        TablebaseResult mateInOne = tablebases().probe(Fen.decode("7k/8/6K1/8/8/8/8/1Q6 w"));
+        Assertions.assertEquals(new TablebaseResult(TablebaseResult.Outcome.WIN, 1), mateInOne);
+        Assertions.assertEquals(1, mateInOne.movesToMate());
+
+        TablebaseResult mirrored = tablebases().probe(Fen.decode("1q6/8/8/8/8/6k1/8/7K b"));
+        Assertions.assertEquals(mateInOne, mirrored);
+
+        TablebaseResult mated = tablebases().probe(Fen.decode("Q6k/8/6K1/8/8/8/8/8 b"));
+        Assertions.assertEquals(new TablebaseResult(TablebaseResult.Outcome.LOSS, 0), mated);
+
+        Assertions.assertNull(tablebases().probe(new ChessGame()));
+        Assertions.assertNull(tablebases().probe(Fen.decode("7k/8/6K1/8/8/8/8/QQ6 w")));
+    }
+
+    @Test
+    @DisplayName("King and pawn endings are won or drawn")
+    public void kingAndPawn() {
+        Assertions.assertEquals(TablebaseResult.Outcome.DRAW,
+                tablebases().probe(Fen.decode("k7/8/8/8/8/8/P7/K7 w")).outcome(), "a rook pawn cannot pass the king");
+        Assertions.assertEquals(TablebaseResult.Outcome.DRAW,
+                tablebases().probe(Fen.decode("8/8/8/8/8/8/4Pk2/K7 b")).outcome(), "the king takes the pawn");
+        Assertions.assertEquals(TablebaseResult.Outcome.WIN,
+                tablebases().probe(Fen.decode("8/8/8/8/8/8/4P3/4K2k w")).outcome(), "the pawn outruns the king");
+        Assertions.assertEquals(TablebaseResult.Outcome.LOSS,
+                tablebases().probe(Fen.decode("4k3/8/8/8/8/8/3p4/7K w")).outcome(), "the black pawn promotes");
+    }
+
+    @Test
+    @DisplayName("Tables survive a trip through files")
+    public void writeAndOpen() throws IOException {
+        Path directory = Files.createTempDirectory("tablebases");
+        try {
+            for (Tablebase table : tablebases().tables()) {
+                table.write(directory);
+            }
+            Tablebases opened = Tablebases.open(directory);
+            Assertions.assertEquals(tablebases().tables().size(), opened.tables().size());
+            ChessGame game = Fen.decode("8/8/8/3k4/8/8/8/R3K3 w");
+            Assertions.assertEquals(tablebases().probe(game), opened.probe(game));
+
+            Files.write(directory.resolve("KQK.tb"), new byte[10]);
+            Assertions.assertThrows(IOException.class, () -> Tablebases.open(directory));
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    @DisplayName("The engine plays the tablebase's mate")
+    public void engineUsesTablebases() throws InvalidMoveException {
+        ChessGame game = Fen.decode("8/8/8/3k4/8/8/8/R3K3 w");
+        TablebaseResult expected = tablebases().probe(game);
+        Assertions.assertEquals(TablebaseResult.Outcome.WIN, expected.outcome());
+
+        try (Engine engine = new Engine(1 << 12)) {
+            engine.setTablebases(tablebases());
+            SearchResult result = engine.search(game, SearchLimits.depth(2));
+            Assertions.assertTrue(result.isMate());
+            Assertions.assertEquals(expected.movesToMate(), result.mateIn());
+
+            ChessGame after = Fen.decode("8/8/8/3k4/8/8/8/R3K3 w");
+            after.makeMove(result.bestMove());
+            TablebaseResult reply = tablebases().probe(after);
+            Assertions.assertEquals(TablebaseResult.Outcome.LOSS, reply.outcome());
+            Assertions.assertEquals(expected.plies() - 1, reply.plies());
+        }
+    }
+}